@@ -0,0 +1,51 @@
+package bench;
+
+import ai.AISolver;
+import model.GameConfig;
+import org.openjdk.jmh.annotations.*;
+import service.GameService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1 bước của AISolver trên ván mới (đã mở ô đầu tiên), và giải đến lúc phải đoán.
+ * Mỗi lần gọi dùng 1 ván khác (seed tăng dần) => đo trung bình trên nhiều board.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AISolverBench {
+
+    @Param({"EASY", "MEDIUM", "HARD", "EXTREME", "1000x1000x150000"})
+    public String config;
+
+    private GameConfig cfg;
+    private long seed;
+    private AISolver solver;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cfg = GameConfig.parse(config);
+    }
+
+    @Setup(Level.Invocation)
+    public void newGame() {
+        seed++;
+        GameService service = new GameService(cfg, seed);
+        solver = new AISolver(service, seed);
+        solver.makeOneMove(); // click đầu tiên
+    }
+
+    @Benchmark
+    public boolean makeOneMove() {
+        return solver.makeOneMove();
+    }
+
+    @Benchmark
+    public int solveUntilGuess() {
+        return solver.solveUntilGuess();
+    }
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import model.Board;
+import model.GameConfig;
+import org.openjdk.jmh.annotations.*;
+import service.BoardGenerator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Sinh board mới (cấp phát Board + rải mìn + đếm mìn kề). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoardGeneratorBench {
+
+    @Param({"EASY", "MEDIUM", "HARD", "EXTREME", "1000x1000x150000", "2000x2000x100000"})
+    public String config;
+
+    private GameConfig cfg;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setup() {
+        cfg = GameConfig.parse(config);
+    }
+
+    @Benchmark
+    public Board generate() {
+        Board board = new Board(cfg.rows, cfg.cols);
+        BoardGenerator.generate(board, cfg.mines, random);
+        return board;
+    }
+
+    /** Board lazy: chỉ chi phí tạo, chunk được sinh khi chạm tới. */
+    @Benchmark
+    public Board createLazy() {
+        return BoardGenerator.createLazy(cfg.rows, cfg.cols, cfg.mines, random.nextLong());
+    }
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import model.Board;
+import model.GameConfig;
+import org.openjdk.jmh.annotations.*;
+import service.BoardGenerator;
+import service.FloodFill;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mở 1 vùng 0 bằng FloodFill.reveal. Trước mỗi lần gọi, các ô lần trước đã mở được đóng lại
+ * (chỉ đúng những ô đó) nên mọi lần đo mở cùng 1 vùng.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FloodFillBench {
+
+    @Param({"EASY", "MEDIUM", "HARD", "EXTREME", "1000x1000x150000", "2000x2000x100000"})
+    public String config;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private Board board;
+    private FloodFill floodFill;
+    private int startRow, startCol;
+    private int[] opened = new int[64];
+    private int openedCount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GameConfig cfg = GameConfig.parse(config);
+        board = new Board(cfg.rows, cfg.cols);
+        BoardGenerator.generate(board, cfg.mines, 42L);
+        floodFill = new FloodFill(parallel);
+
+        // ô 0 gần tâm nhất theo thứ tự quét; không có ô 0 thì lấy ô an toàn bất kỳ
+        int start = -1;
+        int center = board.index(cfg.rows / 2, cfg.cols / 2);
+        for (int k = 0; k < board.size() && start < 0; k++) {
+            int i = (center + k) % board.size();
+            if (!board.isMine(i) && board.getAdjacentMines(i) == 0) start = i;
+        }
+        for (int i = 0; i < board.size() && start < 0; i++) {
+            if (!board.isMine(i)) start = i;
+        }
+        startRow = board.row(start);
+        startCol = board.col(start);
+    }
+
+    @Setup(Level.Invocation)
+    public void closeOpened() {
+        for (int k = 0; k < openedCount; k++) board.setRevealed(opened[k], false);
+        openedCount = 0;
+    }
+
+    @Benchmark
+    public int reveal() {
+        return floodFill.reveal(board, startRow, startCol, i -> {
+            if (openedCount == opened.length) opened = Arrays.copyOf(opened, openedCount * 2);
+            opened[openedCount++] = i;
+        });
+    }
+}
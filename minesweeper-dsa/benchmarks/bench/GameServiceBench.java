@@ -0,0 +1,68 @@
+package bench;
+
+import model.Board;
+import model.GameConfig;
+import org.openjdk.jmh.annotations.*;
+import service.GameService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thao tác của GameService trên 1 ván đã click ô đầu tiên.
+ * Mỗi benchmark để lại board đúng như lúc bắt đầu (reveal + undo, undo + redo).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameServiceBench {
+
+    @Param({"EASY", "MEDIUM", "HARD", "EXTREME", "1000x1000x150000", "2000x2000x100000"})
+    public String config;
+
+    private GameService service;
+    private int targetRow, targetCol;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GameConfig cfg = GameConfig.parse(config);
+        service = new GameService(cfg, 42L);
+        service.reveal(cfg.rows / 2, cfg.cols / 2);
+
+        // ô đóng, an toàn, ưu tiên ô 0 (reveal kèm flood fill)
+        Board board = service.getBoard();
+        int target = -1;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.isRevealed(i) || board.isMine(i)) continue;
+            if (target < 0) target = i;
+            if (board.getAdjacentMines(i) == 0) {
+                target = i;
+                break;
+            }
+        }
+        targetRow = board.row(target);
+        targetCol = board.col(target);
+    }
+
+    @Benchmark
+    public int revealThenUndo() {
+        service.reveal(targetRow, targetCol);
+        service.undo();
+        return service.getRevealedCount();
+    }
+
+    /** Undo rồi redo action click đầu tiên. */
+    @Benchmark
+    public int undoThenRedo() {
+        service.undo();
+        service.redo();
+        return service.getRevealedCount();
+    }
+
+    @Benchmark
+    public boolean checkWin() {
+        return service.checkWin();
+    }
+}
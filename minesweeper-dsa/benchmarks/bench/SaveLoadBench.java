@@ -0,0 +1,59 @@
+package bench;
+
+import model.Board;
+import model.GameConfig;
+import org.openjdk.jmh.annotations.*;
+import service.GameService;
+import service.SaveLoadService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Ghi / đọc board đang chơi dở qua SaveLoadService (file tạm). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SaveLoadBench {
+
+    @Param({"EASY", "MEDIUM", "HARD", "EXTREME", "1000x1000x150000"})
+    public String config;
+
+    private Board board;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        GameConfig cfg = GameConfig.parse(config);
+        GameService service = new GameService(cfg, 42L);
+        service.reveal(cfg.rows / 2, cfg.cols / 2);
+        board = service.getBoard();
+        file = Files.createTempFile("minesweeper-bench", ".sav");
+        SaveLoadService.save(board, file.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void save() throws Exception {
+        SaveLoadService.save(board, file.toString());
+    }
+
+    @Benchmark
+    public Board load() throws Exception {
+        return SaveLoadService.load(file.toString());
+    }
+
+    @Benchmark
+    public Board roundTrip() throws Exception {
+        SaveLoadService.save(board, file.toString());
+        return SaveLoadService.load(file.toString());
+    }
+}
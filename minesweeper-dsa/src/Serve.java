@@ -0,0 +1,35 @@
+import service.GameServer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Chạy server nhiều người chơi trên localhost, không mở GUI.
+ *
+ *   java Serve [port] [idleSeconds] [spoolDir]
+ *
+ * Không có spoolDir => ván bị bỏ luôn khi quá idleSeconds không hoạt động.
+ * Giao thức: xem GameServer.
+ */
+public class Serve {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        long idleMillis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : GameServer.DEFAULT_IDLE_TIMEOUT_MILLIS;
+        Path spool = args.length > 2 ? Path.of(args[2]) : null;
+
+        GameServer server = new GameServer(port, idleMillis, spool);
+        // Ctrl+C: dừng vòng lặp và chờ server spool xong các ván rồi mới thoát
+        Thread loop = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                loop.join(10_000);
+            } catch (InterruptedException ignored) {
+                // thoát luôn
+            }
+        }));
+        System.out.println("Listening on localhost:" + server.getPort()
+                + " idle=" + idleMillis / 1000 + "s spool=" + (spool != null ? spool : "off"));
+        server.run();
+    }
+}
@@ -0,0 +1,34 @@
+import ai.Simulation;
+import model.Difficulty;
+import model.GameConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chạy AI tự chơi hàng loạt, không mở GUI.
+ *
+ *   java Simulate [games] [threads] [seed] [EASY|MEDIUM|HARD|EXTREME|rowsxcolsxmines ...]
+ *
+ * Không chỉ định cấu hình => chạy tất cả Difficulty.
+ */
+public class Simulate {
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        List<GameConfig> configs = new ArrayList<>();
+        for (int k = 3; k < args.length; k++) {
+            configs.add(GameConfig.parse(args[k]));
+        }
+        if (configs.isEmpty()) {
+            for (Difficulty d : Difficulty.values()) configs.add(GameConfig.of(d));
+        }
+
+        System.out.println("games=" + games + " threads=" + threads + " seed=" + seed);
+        for (GameConfig config : configs) {
+            System.out.println(Simulation.run(config, games, threads, seed));
+        }
+    }
+}
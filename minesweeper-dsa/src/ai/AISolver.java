@@ -1,99 +1,94 @@
 package ai;
 
 import model.Board;
-import model.Cell;
 import model.GameState;
 import service.GameService;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 public class AISolver {
 
     private final GameService gameService;
-    private final Random random = new Random();
+    private final ConstraintSolver constraintSolver;
+    private final Random random;
+
+    // thống kê: số lượt đã đi (mỗi lượt suy luận gộp hoặc 1 lần đoán) và số lần phải đoán
+    private int moveCount;
+    private int guessCount;
 
     public AISolver(GameService service) {
+        this(service, new Random());
+    }
+
+    /** Seed cố định cho phần chọn ô đoán ngẫu nhiên => chạy lại cho cùng kết quả. */
+    public AISolver(GameService service, long seed) {
+        this(service, new Random(seed));
+    }
+
+    private AISolver(GameService service, Random random) {
         this.gameService = service;
+        this.random = random;
+        this.constraintSolver = new ConstraintSolver(service, random);
     }
 
+    public int getMoveCount() { return moveCount; }
+    public int getGuessCount() { return guessCount; }
+
     /**
      * Thực hiện 1 "bước suy luận":
-     * - Nếu suy được nước đi chắc chắn -> thực hiện và trả true.
-     * - Nếu không suy được -> random 1 ô chưa mở/không flag để mở, trả true.
+     * - Nếu suy được nước đi chắc chắn -> cắm cờ + mở TẤT CẢ trong 1 action (undo 1 lần), trả true.
+     * - Nếu không suy được -> mở ô có xác suất là mìn thấp nhất, trả true.
      * - Nếu hết nước đi -> false.
      */
     public boolean makeOneMove() {
         if (gameService.getState() != GameState.PLAYING) return false;
 
-        Board board = gameService.getBoard();
-        int rows = board.getRows();
-        int cols = board.getCols();
-
-        List<int[]> safeMoves = new ArrayList<>();
-        List<int[]> mineMoves = new ArrayList<>();
-
-        // 1. Rule-based logic
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Cell cell = board.getCell(r, c);
-                if (!cell.isRevealed()) continue;
-                int k = cell.getAdjacentMines();
-                if (k == 0) continue;
-
-                List<int[]> neighbors = gameService.getNeighbors(r, c);
-                int flagged = 0;
-                List<int[]> unknown = new ArrayList<>();
-
-                for (int[] nb : neighbors) {
-                    Cell nc = board.getCell(nb[0], nb[1]);
-                    if (nc.isFlagged()) flagged++;
-                    else if (!nc.isRevealed()) unknown.add(nb);
-                }
-
-                if (unknown.isEmpty()) continue;
-
-                int need = k - flagged;
-                if (need == 0) {
-                    safeMoves.addAll(unknown);
-                } else if (need == unknown.size()) {
-                    mineMoves.addAll(unknown);
-                }
-            }
-        }
+        // 1. Suy luận bằng ràng buộc (luật đơn, luật cặp, liệt kê thành phần)
+        ConstraintSolver.Result deduced = constraintSolver.analyze();
 
-        // 2. Gán cờ cho các ô chắc chắn là mìn
-        if (!mineMoves.isEmpty()) {
-            for (int[] mv : mineMoves) {
-                gameService.toggleFlag(mv[0], mv[1]);
-            }
+        // 2. Cắm cờ ô chắc chắn là mìn + mở ô chắc chắn an toàn, gộp 1 lần
+        if (!deduced.isEmpty()) {
+            gameService.applyMoves(deduced.mines, deduced.mineCount, deduced.safe, deduced.safeCount);
+            moveCount++;
             return true;
         }
 
-        // 3. Mở ô chắc chắn an toàn
-        if (!safeMoves.isEmpty()) {
-            int[] mv = safeMoves.get(0);
-            gameService.reveal(mv[0], mv[1]);
-            return true;
-        }
+        // 3. Không suy được gì => đoán ô có xác suất là mìn thấp nhất
+        if (deduced.guess < 0) return false;
 
-        // 4. Không suy được gì => random 1 ô chưa mở & chưa flag
-        List<int[]> candidates = new ArrayList<>();
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Cell cell = board.getCell(r, c);
-                if (!cell.isRevealed() && !cell.isFlagged()) {
-                    candidates.add(new int[]{r, c});
-                }
-            }
+        Board board = gameService.getBoard();
+        // click đầu tiên luôn an toàn nên không tính là đoán
+        if (gameService.getRevealedCount() > 0) guessCount++;
+        gameService.reveal(board.row(deduced.guess), board.col(deduced.guess));
+        moveCount++;
+        return true;
+    }
+
+    /**
+     * Giải đến khi xong ván hoặc đến lúc buộc phải đoán (không tự đoán).
+     * Mỗi lượt suy luận là 1 action gộp trong lịch sử undo.
+     * @return số lượt đã áp dụng
+     */
+    public int solveUntilGuess() {
+        int batches = 0;
+        while (makeDeduction()) {
+            batches++;
         }
+        return batches;
+    }
 
-        if (candidates.isEmpty()) return false;
+    /**
+     * 1 lượt suy luận chắc chắn (không đoán), gộp thành 1 action.
+     * Dùng khi cần giải từng bước (autoplay chạy nền), giữa các bước có thể nhường cho UI.
+     * @return false nếu ván đã xong hoặc không suy được gì nữa (phải đoán)
+     */
+    public boolean makeDeduction() {
+        if (gameService.getState() != GameState.PLAYING) return false;
 
-        int[] pick = candidates.get(random.nextInt(candidates.size()));
-        gameService.reveal(pick[0], pick[1]);
+        ConstraintSolver.Result deduced = constraintSolver.analyze(false);
+        if (deduced.isEmpty()) return false;
+        gameService.applyMoves(deduced.mines, deduced.mineCount, deduced.safe, deduced.safeCount);
+        moveCount++;
         return true;
     }
 }
-
@@ -0,0 +1,734 @@
+package ai;
+
+import model.Board;
+import service.GameListener;
+import service.GameService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Bộ suy luận dựa trên ràng buộc của các ô số ở biên (frontier).
+ *
+ * Mỗi ô số đã mở có ô chưa biết xung quanh tạo ra 1 ràng buộc: tổng số mìn trong các ô đó = need.
+ * Các bước:
+ *  1. Luật đơn: need == 0 => tất cả an toàn, need == số ô => tất cả là mìn.
+ *  2. Luật cặp (subset/superset): 2 ràng buộc A, B chung ô,
+ *     nếu need(B) - need(A) == |B \ A| thì B \ A toàn mìn và A \ B toàn an toàn.
+ *  3. Liệt kê: tách các ràng buộc còn lại thành thành phần liên thông,
+ *     backtracking liệt kê mọi cách gán hợp lệ; ô là mìn (hoặc an toàn) trong mọi cách gán => chắc chắn.
+ *  4. Không có ô chắc chắn: tính xác suất mìn chính xác của từng ô và chọn ô ít rủi ro nhất để đoán.
+ *
+ * Không quét lại cả board mỗi lần: solver nghe GameService (GameListener), giữ tập frontier
+ * (ô số đã mở còn ô chưa biết xung quanh) và chỉ cập nhật quanh các ô vừa thay đổi.
+ * Nếu luật đơn trên các ô số vừa bị chạm đã cho nước đi chắc chắn thì không cần phân tích cả biên.
+ */
+public class ConstraintSolver implements GameListener {
+
+    // Giới hạn số nút backtracking cho 1 thành phần, quá thì bỏ qua thành phần đó
+    private static final long NODE_BUDGET = 2_000_000;
+    // Tổng số ô biên tối đa để tính xác suất chính xác (nhân chập), lớn hơn thì xấp xỉ độc lập
+    private static final int EXACT_LIMIT = 600;
+
+    private static final byte UNKNOWN = -1;
+    private static final byte SAFE = 0;
+    private static final byte MINE = 1;
+
+    private final GameService gameService;
+    private final Random random;
+
+    // ----- trạng thái của 1 lần phân tích -----
+    private Board board;
+    private Map<Integer, Integer> varOf;
+    private int[] varCell;
+    private byte[] value;
+    private int[][] cVars;
+    private int[] cNeed;
+    private int[][] varCons;
+    private int remainingMines;
+    private int[] consMines;      // số mìn đã gán trong mỗi ràng buộc khi liệt kê
+    private int[] consUnassigned; // số ô chưa gán trong mỗi ràng buộc khi liệt kê
+    private final List<Enumeration> components = new ArrayList<>();
+    private boolean[] inComponent;
+
+    // ----- frontier cập nhật dần -----
+    private final IntSet frontier = new IntSet();
+    private final IntSet dirty = new IntSet();
+    private final IntSet touched = new IntSet();
+    private boolean rescan = true;
+
+    public ConstraintSolver(GameService service) {
+        this(service, new Random());
+    }
+
+    public ConstraintSolver(GameService service, Random random) {
+        this.gameService = service;
+        this.random = random;
+        service.addListener(this);
+    }
+
+    // ---------- GameListener ----------
+
+    @Override
+    public void cellChanged(int index) {
+        dirty.add(index);
+    }
+
+    @Override
+    public void boardReset() {
+        frontier.clear();
+        dirty.clear();
+        rescan = true;
+    }
+
+    /**
+     * Kết quả: các ô (index trên board) chắc chắn an toàn safe[0..safeCount-1] / chắc chắn là mìn mines[0..mineCount-1].
+     * Nếu không có ô nào chắc chắn: guess là ô ít rủi ro nhất (-1 nếu không còn ô), guessRisk là xác suất mìn của nó.
+     */
+    public static class Result {
+        public int[] safe = new int[8];
+        public int safeCount;
+        public int[] mines = new int[8];
+        public int mineCount;
+        public int guess = -1;
+        public double guessRisk = 1;
+
+        public boolean isEmpty() {
+            return safeCount == 0 && mineCount == 0;
+        }
+
+        void addSafe(int i) {
+            if (safeCount == safe.length) safe = Arrays.copyOf(safe, safeCount * 2);
+            safe[safeCount++] = i;
+        }
+
+        void addMine(int i) {
+            if (mineCount == mines.length) mines = Arrays.copyOf(mines, mineCount * 2);
+            mines[mineCount++] = i;
+        }
+    }
+
+    public Result analyze() {
+        return analyze(true);
+    }
+
+    /** withGuess = false: không có ô chắc chắn thì trả Result rỗng, bỏ qua bước tính xác suất. */
+    public Result analyze(boolean withGuess) {
+        board = gameService.getBoard();
+        remainingMines = gameService.getRemainingMines();
+        syncFrontier();
+
+        Result quick = quickDeductions();
+        if (!quick.isEmpty()) return quick;
+
+        buildConstraints();
+
+        propagate();
+        enumerateComponents();
+
+        Result result = new Result();
+        for (int v = 0; v < value.length; v++) {
+            if (value[v] == SAFE) result.addSafe(varCell[v]);
+            else if (value[v] == MINE) result.addMine(varCell[v]);
+        }
+        if (result.isEmpty() && withGuess) computeGuess(result);
+        return result;
+    }
+
+    // ---------- Frontier ----------
+
+    /** Cập nhật frontier quanh các ô đã thay đổi kể từ lần phân tích trước. */
+    private void syncFrontier() {
+        touched.clear();
+        if (rescan) {
+            rescan = false;
+            dirty.clear();
+            // solver gắn vào giữa ván hoặc board vừa được load: dựng frontier 1 lần
+            if (gameService.getRevealedCount() > 0) {
+                for (int i = 0; i < board.size(); i++) {
+                    if (board.isRevealed(i)) updateFrontier(i);
+                }
+            }
+            return;
+        }
+
+        int rows = board.getRows(), cols = board.getCols();
+        for (int k = 0; k < dirty.size(); k++) {
+            int d = dirty.get(k);
+            int r = board.row(d), c = board.col(d);
+            for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++) {
+                for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1); nc++) {
+                    updateFrontier(nr * cols + nc);
+                }
+            }
+        }
+        dirty.clear();
+    }
+
+    private void updateFrontier(int i) {
+        if (board.isRevealed(i) && !board.isMine(i) && board.getAdjacentMines(i) > 0 && hasUnknownNeighbor(i)) {
+            frontier.add(i);
+            touched.add(i);
+        } else {
+            frontier.remove(i);
+        }
+    }
+
+    private boolean hasUnknownNeighbor(int i) {
+        int rows = board.getRows(), cols = board.getCols();
+        int r = board.row(i), c = board.col(i);
+        for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1); nc++) {
+                int ni = nr * cols + nc;
+                if (!board.isRevealed(ni) && !board.isFlagged(ni)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Luật đơn chỉ trên các ô số vừa bị chạm (đường tắt, không dựng cả hệ ràng buộc). */
+    private Result quickDeductions() {
+        Result result = new Result();
+        IntSet seen = new IntSet();
+        int[] unknown = new int[8];
+
+        for (int k = 0; k < touched.size(); k++) {
+            int i = touched.get(k);
+            int n = collectUnknown(i, unknown);
+            int need = board.getAdjacentMines(i) - flaggedAround;
+            if (n == 0 || need < 0 || need > n) continue;
+            if (need != 0 && need != n) continue;
+
+            for (int j = 0; j < n; j++) {
+                if (!seen.add(unknown[j])) continue;
+                if (need == 0) result.addSafe(unknown[j]);
+                else result.addMine(unknown[j]);
+            }
+        }
+        return result;
+    }
+
+    // số cờ quanh ô vừa gọi collectUnknown
+    private int flaggedAround;
+
+    /** Ghi các ô chưa biết quanh i vào out, trả về số lượng; số cờ để ở flaggedAround. */
+    private int collectUnknown(int i, int[] out) {
+        int rows = board.getRows(), cols = board.getCols();
+        int r = board.row(i), c = board.col(i);
+        int n = 0;
+        flaggedAround = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int nr = r + dr, nc = c + dc;
+                if ((dr == 0 && dc == 0) || nr < 0 || nr >= rows || nc < 0 || nc >= cols) continue;
+                int ni = nr * cols + nc;
+                if (board.isFlagged(ni)) flaggedAround++;
+                else if (!board.isRevealed(ni)) out[n++] = ni;
+            }
+        }
+        return n;
+    }
+
+    // ---------- Dựng ràng buộc ----------
+
+    private void buildConstraints() {
+        varOf = new HashMap<>();
+        List<Integer> cells = new ArrayList<>();
+        List<int[]> cons = new ArrayList<>();
+        List<Integer> needs = new ArrayList<>();
+
+        int[] unknown = new int[8];
+
+        for (int f = 0; f < frontier.size(); f++) {
+            int i = frontier.get(f);
+            int n = collectUnknown(i, unknown);
+            int need = board.getAdjacentMines(i) - flaggedAround;
+            // need ngoài [0, n] nghĩa là có cờ cắm sai, bỏ qua ràng buộc này
+            if (n == 0 || need < 0 || need > n) continue;
+
+            int[] vars = new int[n];
+            for (int j = 0; j < n; j++) {
+                Integer v = varOf.get(unknown[j]);
+                if (v == null) {
+                    v = cells.size();
+                    varOf.put(unknown[j], v);
+                    cells.add(unknown[j]);
+                }
+                vars[j] = v;
+            }
+            cons.add(vars);
+            needs.add(need);
+        }
+
+        varCell = cells.stream().mapToInt(Integer::intValue).toArray();
+        value = new byte[varCell.length];
+        Arrays.fill(value, UNKNOWN);
+        cVars = cons.toArray(new int[0][]);
+        cNeed = needs.stream().mapToInt(Integer::intValue).toArray();
+
+        int[] deg = new int[varCell.length];
+        for (int[] vars : cVars) for (int v : vars) deg[v]++;
+        varCons = new int[varCell.length][];
+        for (int v = 0; v < deg.length; v++) varCons[v] = new int[deg[v]];
+        Arrays.fill(deg, 0);
+        for (int c = 0; c < cVars.length; c++) {
+            for (int v : cVars[c]) varCons[v][deg[v]++] = c;
+        }
+    }
+
+    // ---------- Bước 1 + 2: lan truyền ----------
+
+    private void propagate() {
+        int m = cVars.length;
+        ArrayDeque<Integer> trivialQueue = new ArrayDeque<>();
+        boolean[] inTrivial = new boolean[m];
+        boolean[] pairDirty = new boolean[m];
+        for (int c = 0; c < m; c++) {
+            trivialQueue.add(c);
+            inTrivial[c] = true;
+            pairDirty[c] = true;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            while (!trivialQueue.isEmpty()) {
+                int c = trivialQueue.poll();
+                inTrivial[c] = false;
+                int unk = countUnknown(c);
+                if (unk == 0) continue;
+                int need = remainingNeed(c);
+                if (need == 0 || need == unk) {
+                    for (int v : cVars[c]) {
+                        if (value[v] == UNKNOWN) {
+                            fix(v, need == 0 ? SAFE : MINE, trivialQueue, inTrivial, pairDirty);
+                        }
+                    }
+                }
+            }
+
+            for (int a = 0; a < m && !changed; a++) {
+                if (!pairDirty[a]) continue;
+                pairDirty[a] = false;
+                if (countUnknown(a) == 0) continue;
+
+                for (int v : cVars[a]) {
+                    if (value[v] != UNKNOWN) continue;
+                    for (int b : varCons[v]) {
+                        if (b != a && applyPairRule(a, b, trivialQueue, inTrivial, pairDirty)) {
+                            changed = true;
+                            break;
+                        }
+                    }
+                    if (changed) break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Nếu need(B) - need(A) == |B \ A| (chỉ tính ô chưa biết) thì B \ A là mìn, A \ B an toàn.
+     * Trường hợp A ⊆ B chính là luật subset quen thuộc.
+     */
+    private boolean applyPairRule(int a, int b, ArrayDeque<Integer> q, boolean[] inQ, boolean[] pairDirty) {
+        int onlyB = 0, onlyA = 0;
+        for (int v : cVars[b]) {
+            if (value[v] == UNKNOWN && !contains(cVars[a], v)) onlyB++;
+        }
+        for (int v : cVars[a]) {
+            if (value[v] == UNKNOWN && !contains(cVars[b], v)) onlyA++;
+        }
+        if (onlyA + onlyB == 0) return false;
+        if (remainingNeed(b) - remainingNeed(a) != onlyB) return false;
+
+        for (int v : cVars[b]) {
+            if (value[v] == UNKNOWN && !contains(cVars[a], v)) fix(v, MINE, q, inQ, pairDirty);
+        }
+        for (int v : cVars[a]) {
+            if (value[v] == UNKNOWN && !contains(cVars[b], v)) fix(v, SAFE, q, inQ, pairDirty);
+        }
+        return true;
+    }
+
+    private void fix(int v, byte val, ArrayDeque<Integer> q, boolean[] inQ, boolean[] pairDirty) {
+        value[v] = val;
+        for (int c : varCons[v]) {
+            pairDirty[c] = true;
+            if (!inQ[c]) {
+                inQ[c] = true;
+                q.add(c);
+            }
+        }
+    }
+
+    private int countUnknown(int c) {
+        int n = 0;
+        for (int v : cVars[c]) if (value[v] == UNKNOWN) n++;
+        return n;
+    }
+
+    private int remainingNeed(int c) {
+        int need = cNeed[c];
+        for (int v : cVars[c]) if (value[v] == MINE) need--;
+        return need;
+    }
+
+    private static boolean contains(int[] arr, int x) {
+        for (int y : arr) if (y == x) return true;
+        return false;
+    }
+
+    // ---------- Bước 3: liệt kê theo thành phần liên thông ----------
+
+    private void enumerateComponents() {
+        int n = varCell.length;
+        boolean[] seen = new boolean[n];
+        consMines = new int[cVars.length];
+        consUnassigned = new int[cVars.length];
+        components.clear();
+
+        // mìn đã suy ra ở bước 1, 2 nhưng chưa cắm cờ cũng trừ vào số mìn còn lại
+        int budget = remainingMines;
+        for (byte val : value) if (val == MINE) budget--;
+
+        for (int s = 0; s < n; s++) {
+            if (seen[s] || value[s] != UNKNOWN) continue;
+
+            // BFS gom 1 thành phần; thứ tự BFS giúp backtracking cắt nhánh sớm
+            List<Integer> comp = new ArrayList<>();
+            ArrayDeque<Integer> q = new ArrayDeque<>();
+            q.add(s);
+            seen[s] = true;
+            while (!q.isEmpty()) {
+                int v = q.poll();
+                comp.add(v);
+                for (int c : varCons[v]) {
+                    for (int u : cVars[c]) {
+                        if (!seen[u] && value[u] == UNKNOWN) {
+                            seen[u] = true;
+                            q.add(u);
+                        }
+                    }
+                }
+            }
+            Enumeration e = new Enumeration(comp.stream().mapToInt(Integer::intValue).toArray(), budget);
+            if (e.run()) components.add(e);
+        }
+    }
+
+    /**
+     * Backtracking trên 1 thành phần.
+     * Đếm số lời giải theo số mìn k của thành phần, và số lời giải (theo k) mà mỗi ô là mìn
+     * => vừa suy ra ô chắc chắn, vừa dùng để tính xác suất khi phải đoán.
+     */
+    private class Enumeration {
+        private final int[] vars;
+        private final byte[] assign;
+        private final int maxMines;
+        private final double[] solutionsByMines;
+        // hitsByMines[k] chỉ được cấp khi có lời giải đầu tiên với k mìn (null = chưa có lời giải nào)
+        private final double[][] hitsByMines;
+        private long nodes;
+
+        Enumeration(int[] vars, int maxMines) {
+            this.vars = vars;
+            this.maxMines = Math.min(maxMines, vars.length);
+            this.assign = new byte[vars.length];
+            this.solutionsByMines = new double[this.maxMines + 1];
+            this.hitsByMines = new double[this.maxMines + 1][];
+
+            for (int v : vars) {
+                for (int c : varCons[v]) {
+                    consMines[c] = cNeed[c] - remainingNeed(c);
+                    consUnassigned[c] = countUnknown(c);
+                }
+            }
+        }
+
+        /** @return true nếu liệt kê xong (không vượt ngân sách) và có ít nhất 1 lời giải */
+        boolean run() {
+            if (maxMines < 0 || !search(0, 0)) return false;
+
+            double total = 0;
+            double[] hits = new double[vars.length];
+            for (int k = 0; k <= maxMines; k++) {
+                total += solutionsByMines[k];
+                if (hitsByMines[k] == null) continue;
+                for (int j = 0; j < vars.length; j++) hits[j] += hitsByMines[k][j];
+            }
+            if (total == 0) return false;
+
+            for (int j = 0; j < vars.length; j++) {
+                if (hits[j] == 0) value[vars[j]] = SAFE;
+                else if (hits[j] == total) value[vars[j]] = MINE;
+            }
+            return true;
+        }
+
+        /** @return false nếu vượt ngân sách nút */
+        private boolean search(int j, int placed) {
+            if (++nodes > NODE_BUDGET) return false;
+            if (placed > maxMines) return true;
+
+            if (j == vars.length) {
+                solutionsByMines[placed]++;
+                double[] hits = hitsByMines[placed];
+                if (hits == null) hits = hitsByMines[placed] = new double[vars.length];
+                for (int t = 0; t < vars.length; t++) {
+                    if (assign[t] == MINE) hits[t]++;
+                }
+                return true;
+            }
+
+            int v = vars[j];
+            for (byte val = SAFE; val <= MINE; val++) {
+                if (assignOk(v, val)) {
+                    assign[j] = val;
+                    apply(v, val, 1);
+                    boolean ok = search(j + 1, placed + val);
+                    apply(v, val, -1);
+                    if (!ok) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean assignOk(int v, byte val) {
+            for (int c : varCons[v]) {
+                int m = consMines[c] + val;
+                int left = consUnassigned[c] - 1;
+                if (m > cNeed[c] || m + left < cNeed[c]) return false;
+            }
+            return true;
+        }
+
+        private void apply(int v, byte val, int dir) {
+            for (int c : varCons[v]) {
+                consMines[c] += dir * val;
+                consUnassigned[c] -= dir;
+            }
+        }
+    }
+
+    // ---------- Xác suất khi phải đoán ----------
+
+    /**
+     * Tính xác suất là mìn của từng ô biên và của 1 ô "bên trong" (không kề ô số nào),
+     * kết hợp lời giải của các thành phần với tổng số mìn còn lại:
+     *
+     *   trọng số(cấu hình) = tích số lời giải của từng thành phần * C(U, M - F)
+     *
+     * với U = số ô bên trong, M = số mìn còn lại, F = tổng số mìn ở biên trong cấu hình.
+     * Các thành phần được nhân chập (convolution) theo số mìn; khi biên quá lớn thì coi các
+     * thành phần độc lập, mỗi mìn nhân thêm tỉ lệ mật độ (xấp xỉ nhị thức).
+     */
+    private void computeGuess(Result result) {
+        int unknownCells = board.size() - gameService.getRevealedCount() - gameService.getFlagCount();
+        int interior = unknownCells - varCell.length;
+        int m = remainingMines;
+
+        // thành phần vượt ngân sách liệt kê: không có phân phối, coi như ô bên trong
+        int enumerated = 0;
+        inComponent = new boolean[varCell.length];
+        for (Enumeration e : components) {
+            enumerated += e.vars.length;
+            for (int v : e.vars) inComponent[v] = true;
+        }
+        int looseVars = 0;
+        for (byte val : value) if (val == UNKNOWN) looseVars++;
+        looseVars -= enumerated;
+        int u = interior + looseVars;
+
+        double[][] weights = new double[components.size()][];
+        for (int j = 0; j < weights.length; j++) {
+            weights[j] = normalized(components.get(j).solutionsByMines);
+        }
+
+        double pInterior;
+        double[][] inOthers;
+        // trọng số chính xác (hoặc không còn mìn) => xác suất 0/1 là chắc chắn, không phải đoán
+        boolean exact = enumerated <= EXACT_LIMIT || m == 0;
+        if (enumerated <= EXACT_LIMIT) {
+            double[] binom = binomialWeights(u, m, enumerated);
+            inOthers = othersWeights(weights, binom);
+
+            double[] all = convolveAll(weights);
+            double w = 0, e = 0;
+            for (int f = 0; f < all.length; f++) {
+                w += all[f] * binom[f];
+                e += all[f] * binom[f] * (m - f);
+            }
+            pInterior = w > 0 && u > 0 ? e / (w * u) : 1;
+        } else {
+            double q = Math.min(1, Math.max(0, (double) m / Math.max(1, u + enumerated)));
+            double rho = q < 1 ? q / (1 - q) : Double.MAX_VALUE;
+            inOthers = new double[weights.length][];
+            double expected = 0;
+            for (int j = 0; j < weights.length; j++) {
+                double[] s = new double[weights[j].length];
+                for (int k = 0; k < s.length; k++) s[k] = Math.pow(rho, k);
+                inOthers[j] = s;
+                double w = 0, e = 0;
+                for (int k = 0; k < s.length; k++) {
+                    w += weights[j][k] * s[k];
+                    e += weights[j][k] * s[k] * k;
+                }
+                if (w > 0) expected += e / w;
+            }
+            pInterior = u > 0 ? Math.min(1, Math.max(0, (m - expected) / u)) : 1;
+        }
+
+        int best = -1;
+        double bestRisk = 2;
+        for (int j = 0; j < components.size(); j++) {
+            Enumeration comp = components.get(j);
+            double[] s = inOthers[j];
+            double denom = 0;
+            for (int k = 0; k < s.length; k++) denom += comp.solutionsByMines[k] * s[k];
+            if (denom <= 0) continue;
+
+            for (int t = 0; t < comp.vars.length; t++) {
+                double num = 0;
+                for (int k = 0; k < s.length; k++) {
+                    if (comp.hitsByMines[k] != null) num += comp.hitsByMines[k][t] * s[k];
+                }
+                double risk = num / denom;
+                if (exact && num == 0) {
+                    result.addSafe(varCell[comp.vars[t]]);
+                    continue;
+                }
+                if (exact && num == denom) {
+                    result.addMine(varCell[comp.vars[t]]);
+                    continue;
+                }
+                if (risk < bestRisk) {
+                    bestRisk = risk;
+                    best = varCell[comp.vars[t]];
+                }
+            }
+        }
+
+        if (exact && u > 0 && pInterior == 0) {
+            int cell = pickInteriorCell();
+            if (cell >= 0) result.addSafe(cell);
+        }
+        // chỉ nhờ tổng số mìn mà chắc chắn => trả về như suy luận, AISolver không tính là đoán
+        if (!result.isEmpty()) return;
+
+        if (u > 0 && pInterior < bestRisk) {
+            int cell = pickInteriorCell();
+            if (cell >= 0) {
+                best = cell;
+                bestRisk = pInterior;
+            }
+        }
+        result.guess = best;
+        result.guessRisk = best >= 0 ? bestRisk : 1;
+    }
+
+    /**
+     * binom[f] tỉ lệ với C(u, m - f), f = 0..maxF (số mìn ở biên), chuẩn hoá để max = 1.
+     * Dùng tỉ số C(u, x + 1) / C(u, x) = (u - x) / (x + 1) trong log để không tràn số.
+     */
+    private static double[] binomialWeights(int u, int m, int maxF) {
+        double[] log = new double[maxF + 1];
+        double max = Double.NEGATIVE_INFINITY;
+        double lc = 0;
+        int prevX = -1;
+        for (int f = maxF; f >= 0; f--) {
+            int x = m - f;
+            if (x < 0 || x > u) {
+                log[f] = Double.NEGATIVE_INFINITY;
+                continue;
+            }
+            // chỉ cần tỉ lệ giữa các f nên mốc log bắt đầu từ 0
+            if (prevX >= 0) {
+                for (int y = prevX; y < x; y++) lc += Math.log((double) (u - y) / (y + 1));
+            }
+            prevX = x;
+            log[f] = lc;
+            max = Math.max(max, lc);
+        }
+        double[] w = new double[maxF + 1];
+        for (int f = 0; f <= maxF; f++) {
+            w[f] = log[f] == Double.NEGATIVE_INFINITY ? 0 : Math.exp(log[f] - max);
+        }
+        return w;
+    }
+
+    /** Với mỗi thành phần j: s[k] = tổng trọng số khi thành phần j có k mìn (tính cả các thành phần khác). */
+    private static double[][] othersWeights(double[][] weights, double[] binom) {
+        int n = weights.length;
+        double[][] prefix = new double[n + 1][];
+        double[][] suffix = new double[n + 1][];
+        prefix[0] = new double[]{1};
+        suffix[n] = new double[]{1};
+        for (int j = 0; j < n; j++) prefix[j + 1] = normalized(convolve(prefix[j], weights[j]));
+        for (int j = n - 1; j >= 0; j--) suffix[j] = normalized(convolve(suffix[j + 1], weights[j]));
+
+        double[][] result = new double[n][];
+        for (int j = 0; j < n; j++) {
+            double[] others = convolve(prefix[j], suffix[j + 1]);
+            double[] s = new double[weights[j].length];
+            for (int k = 0; k < s.length; k++) {
+                for (int f = 0; f < others.length && k + f < binom.length; f++) {
+                    s[k] += others[f] * binom[k + f];
+                }
+            }
+            result[j] = s;
+        }
+        return result;
+    }
+
+    private static double[] convolveAll(double[][] weights) {
+        double[] acc = {1};
+        for (double[] w : weights) acc = normalized(convolve(acc, w));
+        return acc;
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] r = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length; j++) r[i + j] += a[i] * b[j];
+        }
+        return r;
+    }
+
+    /** Chia cho phần tử lớn nhất; tỉ lệ giữa các phần tử không đổi nên xác suất không đổi. */
+    private static double[] normalized(double[] a) {
+        double max = 0;
+        for (double x : a) max = Math.max(max, x);
+        if (max == 0) return a;
+        double[] r = new double[a.length];
+        for (int i = 0; i < a.length; i++) r[i] = a[i] / max;
+        return r;
+    }
+
+    /** 1 ô chưa mở, chưa cắm cờ, không thuộc biên. Thử ngẫu nhiên trước rồi mới quét. */
+    private int pickInteriorCell() {
+        int n = board.size();
+        for (int t = 0; t < 64; t++) {
+            int i = random.nextInt(n);
+            if (isInterior(i)) return i;
+        }
+        int start = random.nextInt(n);
+        for (int k = 0; k < n; k++) {
+            int i = start + k < n ? start + k : start + k - n;
+            if (isInterior(i)) return i;
+        }
+        return -1;
+    }
+
+    private boolean isInterior(int i) {
+        if (board.isRevealed(i) || board.isFlagged(i)) return false;
+        Integer v = varOf.get(i);
+        return v == null || (value[v] == UNKNOWN && !inComponent[v]);
+    }
+}
@@ -0,0 +1,109 @@
+package ai;
+
+import java.util.Arrays;
+
+/**
+ * Tập số nguyên không âm (index ô), không boxing.
+ * Bảng băm địa chỉ mở lưu vị trí của phần tử trong mảng dense => add/remove/contains O(1),
+ * duyệt qua get(0..size-1) liên tục trong bộ nhớ.
+ */
+final class IntSet {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] slots;   // slot của keys[pos] => vị trí trong dense
+    private int[] dense;
+    private int size;
+
+    IntSet() {
+        keys = new int[16];
+        slots = new int[16];
+        Arrays.fill(keys, EMPTY);
+        dense = new int[8];
+    }
+
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+    int get(int k) { return dense[k]; }
+
+    boolean contains(int x) {
+        return keys[find(x)] == x;
+    }
+
+    boolean add(int x) {
+        int s = find(x);
+        if (keys[s] == x) return false;
+        if (size == dense.length) dense = Arrays.copyOf(dense, size * 2);
+        keys[s] = x;
+        slots[s] = size;
+        dense[size++] = x;
+        if (size * 2 > keys.length) rehash(keys.length * 2);
+        return true;
+    }
+
+    boolean remove(int x) {
+        int s = find(x);
+        if (keys[s] != x) return false;
+
+        // dồn phần tử cuối vào chỗ trống trong dense
+        int pos = slots[s];
+        int last = dense[--size];
+        if (last != x) {
+            dense[pos] = last;
+            slots[find(last)] = pos;
+        }
+        deleteSlot(s);
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int find(int x) {
+        int mask = keys.length - 1;
+        int s = mix(x) & mask;
+        while (keys[s] != EMPTY && keys[s] != x) s = (s + 1) & mask;
+        return s;
+    }
+
+    /** Xoá theo kiểu backward-shift để không cần tombstone. */
+    private void deleteSlot(int s) {
+        int mask = keys.length - 1;
+        int hole = s;
+        int j = s;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) break;
+            int home = mix(keys[j]) & mask;
+            // phần tử ở j được phép dời về hole nếu home không nằm trong (hole, j]
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                slots[hole] = slots[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys, oldSlots = slots;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] == EMPTY) continue;
+            int t = find(oldKeys[s]);
+            keys[t] = oldKeys[s];
+            slots[t] = oldSlots[s];
+        }
+    }
+
+    private static int mix(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
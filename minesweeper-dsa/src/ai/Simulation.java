@@ -0,0 +1,112 @@
+package ai;
+
+import model.GameConfig;
+import model.GameState;
+import service.GameService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cho AISolver tự chơi hàng loạt ván, không cần GUI, chia trên nhiều thread.
+ *
+ * - Ván thứ g dùng seed suy ra từ (seed, g) => kết quả giống nhau dù chạy bao nhiêu thread.
+ * - Mỗi ván có GameService + AISolver riêng của thread đang chạy nó, không chia sẻ trạng thái.
+ * - Mỗi thread cộng dồn vào bộ đếm riêng, chỉ gộp lại 1 lần ở cuối.
+ */
+public class Simulation {
+
+    /** Kết quả gộp của 1 lần chạy. */
+    public static class Report {
+        public final GameConfig config;
+        public final long games;
+        public final long wins;
+        public final long moves;
+        public final long guesses;
+        public final long elapsedNanos;
+
+        Report(GameConfig config, long games, long wins, long moves, long guesses, long elapsedNanos) {
+            this.config = config;
+            this.games = games;
+            this.wins = wins;
+            this.moves = moves;
+            this.guesses = guesses;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double winRate() { return games == 0 ? 0 : (double) wins / games; }
+        public double movesPerGame() { return games == 0 ? 0 : (double) moves / games; }
+        public double guessesPerGame() { return games == 0 ? 0 : (double) guesses / games; }
+        public double gamesPerSecond() { return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s games=%d  win=%.2f%%  moves/game=%.2f  guesses/game=%.3f  games/s=%.0f",
+                    config, games, 100 * winRate(), movesPerGame(), guessesPerGame(), gamesPerSecond());
+        }
+    }
+
+    private Simulation() {
+    }
+
+    /**
+     * Chơi games ván với cấu hình config trên threads thread.
+     * @param seed seed gốc, cùng seed => cùng kết quả
+     */
+    public static Report run(GameConfig config, int games, int threads, long seed) throws InterruptedException {
+        if (games < 0 || threads <= 0) {
+            throw new IllegalArgumentException("games >= 0, threads > 0");
+        }
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> parts = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t++) {
+                parts.add(pool.submit(() -> {
+                    // {games, wins, moves, guesses}
+                    long[] acc = new long[4];
+                    int g;
+                    while ((g = next.getAndIncrement()) < games) {
+                        playOne(config, seed, g, acc);
+                    }
+                    return acc;
+                }));
+            }
+
+            long[] total = new long[4];
+            for (Future<long[]> f : parts) {
+                long[] acc = f.get();
+                for (int k = 0; k < total.length; k++) total[k] += acc[k];
+            }
+            return new Report(config, total[0], total[1], total[2], total[3], System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void playOne(GameConfig config, long seed, int game, long[] acc) {
+        SplittableRandom rng = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (game + 1)));
+        GameService service = new GameService(config, rng.nextLong());
+        AISolver solver = new AISolver(service, rng.nextLong());
+
+        // mỗi lượt thay đổi ít nhất 1 ô => không thể quá số ô
+        long limit = (long) config.cells() + 1;
+        for (long step = 0; step < limit && solver.makeOneMove(); step++) {
+        }
+
+        acc[0]++;
+        if (service.getState() == GameState.WON) acc[1]++;
+        acc[2] += solver.getMoveCount();
+        acc[3] += solver.getGuessCount();
+    }
+}
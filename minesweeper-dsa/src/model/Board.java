@@ -1,26 +1,268 @@
 package model;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
+/**
+ * Bàn cờ lưu dạng "packed": mỗi ô là 1 byte, index = r * cols + c.
+ *
+ *  bit 0      : mìn
+ *  bit 1      : đã mở
+ *  bit 2      : cắm cờ
+ *  bit 4..7   : số mìn xung quanh (0..8), ô là mìn cũng được đếm
+ *
+ * Các byte được chia thành chunk CHUNK_SIZE ô, chunk chỉ được cấp phát khi có người đọc/ghi tới.
+ * Nếu Board có ChunkLoader (board custom rất lớn), mìn của chunk cũng chỉ được sinh khi cần:
+ *  - "lớp mìn" (bitset) của chunk được sinh bởi loader,
+ *  - khi chunk được dùng thật thì ghép bit mìn + đếm số mìn xung quanh từ lớp mìn của các chunk lân cận.
+ * => Bộ nhớ và thời gian khởi tạo tỉ lệ với vùng đã chạm tới, không phải rows * cols.
+ *
+ * getCell(r, c) vẫn dùng được, nhưng chỉ trả về 1 view (flyweight) trỏ vào byte tương ứng.
+ * Code nóng (GameService, AISolver, FloodFill...) nên dùng trực tiếp API theo index.
+ */
 public class Board implements Serializable {
-    private int rows;
-    private int cols;
-    private Cell[][] grid;
+
+    private static final long serialVersionUID = 3L;
+
+    public static final int CHUNK_SHIFT = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // chunk được publish bằng release/acquire: thread khác (flood fill song song) không thấy chunk dở dang
+    private static final VarHandle CHUNK = MethodHandles.arrayElementVarHandle(byte[][].class);
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    static final int MINE = 1;
+    static final int REVEALED = 1 << 1;
+    static final int FLAGGED = 1 << 2;
+    static final int ADJ_SHIFT = 4;
+    static final int ADJ_MASK = 0xF << ADJ_SHIFT;
+
+    /**
+     * Sinh mìn cho 1 chunk theo yêu cầu.
+     * Loader chỉ cần bật bit tương ứng trong mineBits (bit i = ô thứ i của chunk).
+     */
+    public interface ChunkLoader extends Serializable {
+        void placeMines(int chunk, int length, long[] mineBits);
+    }
+
+    private final int rows;
+    private final int cols;
+    private final int size;
+    private final byte[][] chunks;
+    private final long[][] mineLayers;
+    private final ChunkLoader loader;
 
     public Board(int rows, int cols) {
+        this(rows, cols, null);
+    }
+
+    public Board(int rows, int cols, ChunkLoader loader) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid board size: " + rows + "x" + cols);
+        }
         this.rows = rows;
         this.cols = cols;
-        grid = new Cell[rows][cols];
+        this.size = rows * cols;
+        this.loader = loader;
 
-        for (int i = 0; i < rows; i++)
-            for (int j = 0; j < cols; j++)
-                grid[i][j] = new Cell();
+        int chunkCount = (int) (((long) size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.chunks = new byte[chunkCount][];
+        this.mineLayers = loader != null ? new long[chunkCount][] : null;
     }
 
     public Cell getCell(int r, int c) {
-        return grid[r][c];
+        return new Cell(this, index(r, c));
     }
 
     public int getRows() { return rows; }
     public int getCols() { return cols; }
+    public int size() { return size; }
+
+    // ---------- index <-> (row, col) ----------
+
+    /**
+     * (r, c) nằm ngoài board thì báo lỗi ngay (như Cell[][] cũ), không lặng lẽ trỏ sang ô của dòng kế.
+     * Vòng lặp nóng đã tự kiểm tra biên thì dùng thẳng API theo index.
+     */
+    public int index(int r, int c) {
+        if (r < 0 || r >= rows || c < 0 || c >= cols) {
+            throw new IndexOutOfBoundsException("Cell (" + r + ", " + c + ") outside " + rows + "x" + cols + " board");
+        }
+        return r * cols + c;
+    }
+
+    public int row(int index) { return index / cols; }
+    public int col(int index) { return index % cols; }
+
+    // ---------- API theo index ----------
+
+    public boolean isMine(int i) { return (get(i) & MINE) != 0; }
+    public boolean isRevealed(int i) { return (get(i) & REVEALED) != 0; }
+    public boolean isFlagged(int i) { return (get(i) & FLAGGED) != 0; }
+    public int getAdjacentMines(int i) { return (get(i) & ADJ_MASK) >>> ADJ_SHIFT; }
+
+    public void setMine(int i, boolean mine) { setBit(i, MINE, mine); }
+    public void setRevealed(int i, boolean revealed) { setBit(i, REVEALED, revealed); }
+    public void setFlagged(int i, boolean flagged) { setBit(i, FLAGGED, flagged); }
+
+    public void setAdjacentMines(int i, int count) {
+        put(i, (byte) ((get(i) & ~ADJ_MASK) | (count << ADJ_SHIFT)));
+    }
+
+    /**
+     * Mở ô i nếu chưa mở và không cắm cờ. Thao tác atomic nên nhiều thread gọi cùng lúc vẫn an toàn.
+     * @return true nếu chính lần gọi này đã mở ô
+     */
+    public boolean tryReveal(int i) {
+        byte[] ch = chunk(i);
+        int off = i & CHUNK_MASK;
+        if ((ch[off] & FLAGGED) != 0) return false;
+        byte prev = (byte) CELL.getAndBitwiseOr(ch, off, (byte) REVEALED);
+        return (prev & REVEALED) == 0;
+    }
+
+    /** Chunk chứa ô i đã được cấp phát chưa (không kích hoạt việc load). */
+    public boolean isLoaded(int i) {
+        return chunks[i >>> CHUNK_SHIFT] != null;
+    }
+
+    /**
+     * Ô thuộc chunk lazy chưa load: số mìn xung quanh của nó sẽ được tính từ lớp mìn khi load,
+     * nên khi dời mìn không cần (và không được) cộng/trừ bộ đếm của nó.
+     */
+    public boolean isPending(int i) {
+        return loader != null && chunks[i >>> CHUNK_SHIFT] == null;
+    }
+
+    /**
+     * Các hàm đếm dưới đây duyệt toàn bộ các chunk đã load (chunk chưa load thì chưa có ô nào mở/cắm cờ).
+     * Chỉ dùng khi cần dựng lại bộ đếm, ví dụ sau khi load board từ file.
+     */
+    public int countRevealedSafe() {
+        return countMatching(REVEALED | MINE, REVEALED);
+    }
+
+    public int countRevealedMines() {
+        return countMatching(REVEALED | MINE, REVEALED | MINE);
+    }
+
+    public int countFlagged() {
+        return countMatching(FLAGGED, FLAGGED);
+    }
+
+    int countMatching(int mask, int value) {
+        int count = 0;
+        for (byte[] ch : chunks) {
+            if (ch == null) continue;
+            for (byte b : ch) {
+                if ((b & mask) == value) count++;
+            }
+        }
+        return count;
+    }
+
+    // ---------- Chunk storage ----------
+    // get / put / setBit / tryReveal / isLoaded / countMatching là điểm duy nhất chạm vào bộ nhớ ô,
+    // MappedBoard override chúng để đọc/ghi thẳng trên file map.
+
+    byte get(int i) {
+        return chunk(i)[i & CHUNK_MASK];
+    }
+
+    void put(int i, byte value) {
+        chunk(i)[i & CHUNK_MASK] = value;
+    }
+
+    void setBit(int i, int bit, boolean on) {
+        byte[] ch = chunk(i);
+        int off = i & CHUNK_MASK;
+        if (on) ch[off] |= bit;
+        else ch[off] &= ~bit;
+    }
+
+    private byte[] chunk(int i) {
+        byte[] ch = (byte[]) CHUNK.getAcquire(chunks, i >>> CHUNK_SHIFT);
+        return ch != null ? ch : load(i >>> CHUNK_SHIFT);
+    }
+
+    private int chunkStart(int k) {
+        return k << CHUNK_SHIFT;
+    }
+
+    private int chunkLength(int k) {
+        return Math.min(CHUNK_SIZE, size - chunkStart(k));
+    }
+
+    private synchronized byte[] load(int k) {
+        byte[] ch = chunks[k];
+        if (ch != null) return ch;
+
+        ch = new byte[chunkLength(k)];
+        if (loader != null) {
+            int start = chunkStart(k);
+            int end = start + ch.length;
+
+            long[] own = mineLayer(k);
+            for (int w = 0; w < own.length; w++) {
+                for (long bits = own[w]; bits != 0; bits &= bits - 1) {
+                    ch[(w << 6) + Long.numberOfTrailingZeros(bits)] |= MINE;
+                }
+            }
+
+            // Đếm lại số mìn xung quanh: chỉ cần duyệt mìn trong [start - cols - 1, end + cols + 1)
+            int from = Math.max(0, start - cols - 1);
+            int to = (int) Math.min(size, (long) end + cols + 1);
+            for (int kk = from >>> CHUNK_SHIFT; kk <= (to - 1) >>> CHUNK_SHIFT; kk++) {
+                int base = chunkStart(kk);
+                int lo = Math.max(from, base) - base;
+                int hi = Math.min(to, base + chunkLength(kk)) - base;
+                byte[] loaded = chunks[kk];
+
+                if (loaded != null) {
+                    for (int off = lo; off < hi; off++) {
+                        if ((loaded[off] & MINE) != 0) addAround(ch, start, base + off);
+                    }
+                } else {
+                    long[] layer = kk == k ? own : mineLayer(kk);
+                    for (int w = lo >>> 6; w <= (hi - 1) >>> 6; w++) {
+                        for (long bits = layer[w]; bits != 0; bits &= bits - 1) {
+                            int off = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            if (off >= lo && off < hi) addAround(ch, start, base + off);
+                        }
+                    }
+                }
+            }
+            mineLayers[k] = null;
+        }
+        CHUNK.setRelease(chunks, k, ch);
+        return ch;
+    }
+
+    /** Tăng bộ đếm mìn cho các ô lân cận của mine nằm trong chunk ch (bắt đầu tại start). */
+    private void addAround(byte[] ch, int start, int mine) {
+        int r = mine / cols, c = mine % cols;
+        for (int dr = -1; dr <= 1; dr++) {
+            int nr = r + dr;
+            if (nr < 0 || nr >= rows) continue;
+            for (int dc = -1; dc <= 1; dc++) {
+                int nc = c + dc;
+                if ((dr == 0 && dc == 0) || nc < 0 || nc >= cols) continue;
+                int off = nr * cols + nc - start;
+                if (off >= 0 && off < ch.length) ch[off] += 1 << ADJ_SHIFT;
+            }
+        }
+    }
+
+    private long[] mineLayer(int k) {
+        long[] layer = mineLayers[k];
+        if (layer == null) {
+            int length = chunkLength(k);
+            layer = new long[(length + 63) >>> 6];
+            loader.placeMines(k, length, layer);
+            mineLayers[k] = layer;
+        }
+        return layer;
+    }
 }
@@ -1,32 +1,30 @@
 package model;
 
-import java.io.Serializable;
+/**
+ * View (flyweight) của 1 ô trên Board.
+ * Không giữ dữ liệu riêng, mọi getter/setter đọc/ghi thẳng vào byte của ô trong Board.
+ */
+public class Cell {
+    private final Board board;
+    private final int index;
 
-public class Cell implements Serializable {
-    private boolean isMine;
-    private boolean isRevealed;
-    private boolean isFlagged;
-    private int adjacentMines;
-
-    public Cell() {
-        this.isMine = false;
-        this.isRevealed = false;
-        this.isFlagged = false;
-        this.adjacentMines = 0;
+    Cell(Board board, int index) {
+        this.board = board;
+        this.index = index;
     }
 
-    public boolean isMine() { return isMine; }
-    public void setMine(boolean mine) { this.isMine = mine; }
+    public boolean isMine() { return board.isMine(index); }
+    public void setMine(boolean mine) { board.setMine(index, mine); }
 
-    public boolean isRevealed() { return isRevealed; }
-    public void reveal() { this.isRevealed = true; }
-    public void hide() { this.isRevealed = false; }
-    public void setRevealed(boolean revealed) { this.isRevealed = revealed; }
+    public boolean isRevealed() { return board.isRevealed(index); }
+    public void reveal() { board.setRevealed(index, true); }
+    public void hide() { board.setRevealed(index, false); }
+    public void setRevealed(boolean revealed) { board.setRevealed(index, revealed); }
 
-    public boolean isFlagged() { return isFlagged; }
-    public void toggleFlag() { this.isFlagged = !this.isFlagged; }
-    public void setFlagged(boolean flagged) { this.isFlagged = flagged; }
+    public boolean isFlagged() { return board.isFlagged(index); }
+    public void toggleFlag() { board.setFlagged(index, !board.isFlagged(index)); }
+    public void setFlagged(boolean flagged) { board.setFlagged(index, flagged); }
 
-    public int getAdjacentMines() { return adjacentMines; }
-    public void setAdjacentMines(int count) { this.adjacentMines = count; }
+    public int getAdjacentMines() { return board.getAdjacentMines(index); }
+    public void setAdjacentMines(int count) { board.setAdjacentMines(index, count); }
 }
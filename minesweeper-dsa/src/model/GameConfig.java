@@ -0,0 +1,58 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * Kích thước + số mìn của 1 ván.
+ * Có thể lấy từ 1 Difficulty có sẵn, hoặc tự chọn (custom) với board rất lớn.
+ */
+public final class GameConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int rows;
+    public final int cols;
+    public final int mines;
+
+    // null nếu là board custom
+    private final Difficulty difficulty;
+
+    private GameConfig(int rows, int cols, int mines, Difficulty difficulty) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid board size: " + rows + "x" + cols);
+        }
+        if (mines < 0 || mines >= (long) rows * cols) {
+            throw new IllegalArgumentException("Invalid mine count: " + mines);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.mines = mines;
+        this.difficulty = difficulty;
+    }
+
+    public static GameConfig of(Difficulty diff) {
+        return new GameConfig(diff.rows, diff.cols, diff.mines, diff);
+    }
+
+    public static GameConfig custom(int rows, int cols, int mines) {
+        return new GameConfig(rows, cols, mines, null);
+    }
+
+    /** "EASY" / "hard" / "1000x1000x150000" (rows x cols x mines). */
+    public static GameConfig parse(String s) {
+        String[] p = s.toLowerCase().split("x");
+        if (p.length == 3) {
+            return custom(Integer.parseInt(p[0]), Integer.parseInt(p[1]), Integer.parseInt(p[2]));
+        }
+        return of(Difficulty.valueOf(s.toUpperCase()));
+    }
+
+    public Difficulty getDifficulty() { return difficulty; }
+    public boolean isCustom() { return difficulty == null; }
+    public int cells() { return rows * cols; }
+
+    @Override
+    public String toString() {
+        return difficulty != null ? difficulty.name() : rows + "x" + cols + "/" + mines;
+    }
+}
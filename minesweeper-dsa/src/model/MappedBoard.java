@@ -0,0 +1,138 @@
+package model;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Board mà byte của từng ô nằm trong file được map vào bộ nhớ (MappedByteBuffer), không nằm trên heap.
+ * Layout mỗi byte giống hệt Board (mìn / mở / cờ / số mìn xung quanh).
+ *
+ * - Mở file chỉ tốn thời gian map, ô được hệ điều hành đọc từ đĩa khi truy cập lần đầu.
+ * - Ghi (mở ô, cắm cờ...) đi thẳng vào file; force() để chắc chắn đã xuống đĩa.
+ * - 1 MappedByteBuffer tối đa 2 GB nên file được map theo từng đoạn SEGMENT_SIZE byte.
+ *
+ * Không serialize được (dữ liệu nằm trong file, không nằm trong object).
+ */
+public class MappedBoard extends Board {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final transient MappedByteBuffer[] segments;
+    // file + vị trí ô đầu tiên (file = null nếu người tạo không cho biết)
+    private final transient Path file;
+    private final long offset;
+
+    /**
+     * Map vùng [offset, offset + rows * cols) của file.
+     * writable = true cần channel mở READ + WRITE; channel có thể đóng ngay sau đó, vùng map vẫn dùng được.
+     */
+    public MappedBoard(int rows, int cols, FileChannel channel, long offset, boolean writable) throws IOException {
+        this(rows, cols, channel, offset, writable, null);
+    }
+
+    /** Như trên, kèm đường dẫn của file đang map (để biết lưu đè lên chính file đó). */
+    public MappedBoard(int rows, int cols, FileChannel channel, long offset, boolean writable, Path file)
+            throws IOException {
+        super(rows, cols);
+        this.file = file;
+        this.offset = offset;
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        int size = size();
+        segments = new MappedByteBuffer[(int) (((long) size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int s = 0; s < segments.length; s++) {
+            long start = (long) s << SEGMENT_SHIFT;
+            long length = Math.min(SEGMENT_SIZE, size - start);
+            segments[s] = channel.map(mode, offset + start, length);
+        }
+    }
+
+    /** File đang map, null nếu không rõ. */
+    public Path getFile() {
+        return file;
+    }
+
+    /** Vị trí byte của ô 0 trong file. */
+    public long getOffset() {
+        return offset;
+    }
+
+    /** Chép toàn bộ ô (kể cả số mìn xung quanh) từ board khác cùng kích thước. */
+    public void copyFrom(Board src) {
+        if (src.getRows() != getRows() || src.getCols() != getCols()) {
+            throw new IllegalArgumentException("Board size mismatch");
+        }
+        for (int i = 0; i < size(); i++) {
+            put(i, src.get(i));
+        }
+    }
+
+    /** Ghi các thay đổi còn trong page cache xuống đĩa. */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    // ---------- Chunk storage => file map ----------
+
+    @Override
+    byte get(int i) {
+        return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+    }
+
+    @Override
+    void put(int i, byte value) {
+        segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, value);
+    }
+
+    @Override
+    void setBit(int i, int bit, boolean on) {
+        byte b = get(i);
+        put(i, (byte) (on ? b | bit : b & ~bit));
+    }
+
+    /** ByteBuffer không có CAS theo byte => khoá cả board (chỉ flood fill song song mới gọi cùng lúc). */
+    @Override
+    public synchronized boolean tryReveal(int i) {
+        byte b = get(i);
+        if ((b & (FLAGGED | REVEALED)) != 0) return false;
+        put(i, (byte) (b | REVEALED));
+        return true;
+    }
+
+    @Override
+    public boolean isLoaded(int i) {
+        return true;
+    }
+
+    /** Đọc từng khối CHUNK_SIZE byte ra mảng tạm rồi đếm (nhanh hơn nhiều so với get từng byte). */
+    @Override
+    int countMatching(int mask, int value) {
+        byte[] block = new byte[CHUNK_SIZE];
+        int count = 0;
+        for (MappedByteBuffer segment : segments) {
+            ByteBuffer view = segment.duplicate().clear();
+            while (view.hasRemaining()) {
+                int n = Math.min(block.length, view.remaining());
+                view.get(block, 0, n);
+                for (int k = 0; k < n; k++) {
+                    if ((block[k] & mask) == value) count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException("MappedBoard lives in its file, save it with SaveLoadService");
+    }
+}
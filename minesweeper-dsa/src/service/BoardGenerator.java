@@ -1,52 +1,203 @@
 package service;
 
 import model.Board;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 public class BoardGenerator {
 
     public static void generate(Board board, int mines) {
-        Random r = new Random();
-        int rows = board.getRows();
-        int cols = board.getCols();
+        generate(board, mines, new SplittableRandom());
+    }
+
+    /** Sinh board với seed cố định => cùng seed luôn ra cùng 1 board (dùng cho mô phỏng/replay). */
+    public static void generate(Board board, int mines, long seed) {
+        generate(board, mines, new SplittableRandom(seed));
+    }
+
+    /**
+     * Chọn mines vị trí phân biệt bằng thuật toán Floyd (biến thể Fisher-Yates từng phần):
+     * đúng mines lần random, không thử lại kể cả khi mật độ mìn gần 100%.
+     * Bit mìn của board được dùng luôn làm "tập đã chọn", không cần HashSet.
+     * Mỗi quả mìn đặt xuống chỉ cập nhật bộ đếm của 8 ô xung quanh => O(mines), không phải O(rows * cols * 9).
+     */
+    public static void generate(Board board, int mines, SplittableRandom rnd) {
+        int n = board.size();
+        if (mines < 0 || mines > n) {
+            throw new IllegalArgumentException("Invalid mine count: " + mines);
+        }
+
+        for (int j = n - mines; j < n; j++) {
+            int t = rnd.nextInt(j + 1);
+            if (board.isMine(t)) t = j;
+            board.setMine(t, true);
+            addAdjacent(board, t, 1);
+        }
+    }
+
+    /** Cộng delta vào bộ đếm mìn của 8 ô quanh ô index. */
+    static void addAdjacent(Board b, int index, int delta) {
+        int rows = b.getRows(), cols = b.getCols();
+        int r = b.row(index), c = b.col(index);
+
+        for (int dr = -1; dr <= 1; dr++) {
+            int nr = r + dr;
+            if (nr < 0 || nr >= rows) continue;
+            for (int dc = -1; dc <= 1; dc++) {
+                int nc = c + dc;
+                if ((dr == 0 && dc == 0) || nc < 0 || nc >= cols) continue;
+                int ni = nr * cols + nc;
+                // chunk lazy chưa load sẽ tự đếm lại khi load, không sửa (và không ép load)
+                if (b.isPending(ni)) continue;
+                b.setAdjacentMines(ni, b.getAdjacentMines(ni) + delta);
+            }
+        }
+    }
+
+    // ---------- First click an toàn ----------
+
+    private static final int RELOCATE_TRIES = 64;
+
+    /**
+     * Đảm bảo ô (r, c) không có mìn, không cần sinh lại cả board.
+     * Mìn nằm trong vùng an toàn được dời sang 1 ô trống ngẫu nhiên ngoài vùng, bộ đếm chỉ sửa quanh 2 ô đó.
+     *
+     * openZero = true: vùng an toàn là cả 3x3 quanh (r, c) => click đầu luôn mở ra ô 0.
+     * Nếu board quá dày không đủ chỗ cho 3x3 thì chỉ đảm bảo riêng ô (r, c).
+     *
+     * @param mines tổng số mìn trên board
+     */
+    public static void makeSafe(Board board, int r, int c, boolean openZero, int mines, SplittableRandom rnd) {
+        int rows = board.getRows(), cols = board.getCols();
+        int radius = 0;
+        if (openZero) {
+            int zone = (Math.min(r + 1, rows - 1) - Math.max(r - 1, 0) + 1)
+                    * (Math.min(c + 1, cols - 1) - Math.max(c - 1, 0) + 1);
+            if (board.size() - zone >= mines) radius = 1;
+        }
+
+        for (int rr = Math.max(r - radius, 0); rr <= Math.min(r + radius, rows - 1); rr++) {
+            for (int cc = Math.max(c - radius, 0); cc <= Math.min(c + radius, cols - 1); cc++) {
+                int i = rr * cols + cc;
+                if (!board.isMine(i)) continue;
+
+                int target = findFreeCell(board, i, r, c, radius, rnd);
+                board.setMine(i, false);
+                addAdjacent(board, i, -1);
+                board.setMine(target, true);
+                addAdjacent(board, target, 1);
+            }
+        }
+    }
 
-        Set<Integer> used = new HashSet<>();
+    /**
+     * Tìm 1 ô không phải mìn, nằm ngoài vùng an toàn.
+     * Thử ngẫu nhiên trong chunk của ô nguồn trước (chunk đó đã load sẵn),
+     * không được thì quét tuần tự từ 1 vị trí ngẫu nhiên.
+     */
+    private static int findFreeCell(Board board, int from, int r, int c, int radius, SplittableRandom rnd) {
+        int n = board.size();
+        int chunkStart = from & ~(Board.CHUNK_SIZE - 1);
+        int chunkLength = Math.min(Board.CHUNK_SIZE, n - chunkStart);
 
-        while (used.size() < mines) {
-            int id = r.nextInt(rows * cols);
-            used.add(id);
+        for (int t = 0; t < RELOCATE_TRIES; t++) {
+            int i = chunkStart + rnd.nextInt(chunkLength);
+            if (isFree(board, i, r, c, radius)) return i;
         }
 
-        for (int id : used) {
-            int row = id / cols;
-            int col = id % cols;
-            board.getCell(row, col).setMine(true);
+        int start = rnd.nextInt(n);
+        for (int k = 0; k < n; k++) {
+            int i = start + k < n ? start + k : start + k - n;
+            if (isFree(board, i, r, c, radius)) return i;
         }
+        throw new IllegalStateException("No free cell to move a mine to");
+    }
+
+    private static boolean isFree(Board board, int i, int r, int c, int radius) {
+        if (Math.abs(board.row(i) - r) <= radius && Math.abs(board.col(i) - c) <= radius) return false;
+        return !board.isMine(i);
+    }
 
-        computeAdjacent(board);
+    // ---------- Board custom lớn: sinh mìn lazy theo chunk ----------
+
+    /**
+     * Tạo board mà mìn chỉ được sinh khi chunk tương ứng được chạm tới.
+     * Khởi tạo chỉ chia trước số mìn cho từng chunk (O(số chunk)),
+     * sau đó mỗi chunk tự sinh vị trí mìn từ seed riêng => kết quả không phụ thuộc thứ tự truy cập.
+     */
+    public static Board createLazy(int rows, int cols, int mines, long seed) {
+        return new Board(rows, cols, new LazyMines(rows * cols, mines, seed));
     }
 
-    private static void computeAdjacent(Board b) {
-        int r = b.getRows(), c = b.getCols();
+    private static final class LazyMines implements Board.ChunkLoader {
+        private static final long serialVersionUID = 1L;
+
+        private final long seed;
+        private final int[] minesPerChunk;
+
+        LazyMines(int size, int mines, long seed) {
+            this.seed = seed;
+            int chunkCount = (int) (((long) size + Board.CHUNK_SIZE - 1) >>> Board.CHUNK_SHIFT);
+            this.minesPerChunk = new int[chunkCount];
+            split(size, 0, chunkCount, mines, new SplittableRandom(seed));
+        }
+
+        /** Chia số mìn của khoảng chunk [from, to) theo phân phối siêu bội, chia đôi đệ quy. */
+        private void split(int size, int from, int to, int mines, SplittableRandom rnd) {
+            if (to - from == 1) {
+                minesPerChunk[from] = mines;
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            long start = (long) from << Board.CHUNK_SHIFT;
+            long end = Math.min(size, (long) to << Board.CHUNK_SHIFT);
+            long left = (long) mid << Board.CHUNK_SHIFT;
+
+            int leftMines = hypergeometric(rnd, end - start, mines, left - start);
+            split(size, from, mid, leftMines, rnd);
+            split(size, mid, to, mines - leftMines, rnd);
+        }
 
-        for (int i = 0; i < r; i++) {
-            for (int j = 0; j < c; j++) {
-                if (b.getCell(i, j).isMine()) continue;
+        @Override
+        public void placeMines(int chunk, int length, long[] mineBits) {
+            SplittableRandom rnd = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (chunk + 1)));
+            int k = minesPerChunk[chunk];
+
+            // Thuật toán Floyd: chọn k vị trí phân biệt trong [0, length), không cần loại bỏ/thử lại
+            for (int j = length - k; j < length; j++) {
+                int t = rnd.nextInt(j + 1);
+                if ((mineBits[t >>> 6] & (1L << t)) != 0) t = j;
+                mineBits[t >>> 6] |= 1L << t;
+            }
+        }
+    }
 
-                int count = 0;
+    /**
+     * Số mìn rơi vào n ô đầu tiên khi rải mines mìn lên population ô.
+     * Ít mìn thì mô phỏng chính xác từng quả, nhiều mìn thì xấp xỉ chuẩn (kẹp trong miền hợp lệ).
+     */
+    private static int hypergeometric(SplittableRandom rnd, long population, int mines, long n) {
+        int lo = (int) Math.max(0, mines - (population - n));
+        int hi = (int) Math.min(mines, n);
 
-                for (int dr = -1; dr <= 1; dr++) {
-                    for (int dc = -1; dc <= 1; dc++) {
-                        int nr = i + dr, nc = j + dc;
-                        if (0 <= nr && nr < r && 0 <= nc && nc < c)
-                            if (b.getCell(nr, nc).isMine())
-                                count++;
-                    }
-                }
-                b.getCell(i, j).setAdjacentMines(count);
+        if (mines <= 64) {
+            int hit = 0;
+            for (int j = 0; j < mines; j++) {
+                if (rnd.nextLong(population - j) < n - hit) hit++;
             }
+            return hit;
         }
+
+        double p = (double) mines / population;
+        double mean = n * p;
+        double var = n * p * (1 - p) * (population - n) / Math.max(1, population - 1);
+        long x = Math.round(mean + Math.sqrt(var) * gaussian(rnd));
+        return (int) Math.max(lo, Math.min(hi, x));
+    }
+
+    private static double gaussian(SplittableRandom rnd) {
+        // Box-Muller
+        double u = 1.0 - rnd.nextDouble();
+        double v = rnd.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
     }
 }
@@ -2,54 +2,273 @@ package service;
 
 import model.Board;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
+/**
+ * Flood-fill theo scanline (từng đoạn liên tiếp trên 1 hàng) cho vùng ô 0.
+ *
+ * - Mở ô ngay trên board và báo từng ô vừa mở qua callback (index = r * cols + c).
+ * - Bit "đã mở" của chính board đóng vai trò mảng visited => không cấp phát boolean[rows][cols] mỗi lần.
+ * - Hàng đợi là 1 stack int[] dùng lại giữa các lần gọi, mỗi đoạn chỉ đẩy 1 seed => không có int[] cho từng ô.
+ *
+ * Ô cắm cờ không bị mở (và chặn vùng lan qua nó).
+ *
+ * Board rất lớn: khi vùng đang mở đã đủ to, phần còn lại được chia theo tile TILE x TILE
+ * và lan song song trên ForkJoinPool (mỗi ô được "giành" bằng Board.tryReveal nên không mở trùng).
+ * Tập ô được mở giống hệt bản tuần tự, callback vẫn chạy trên thread gọi reveal.
+ *
+ * Không thread-safe: mỗi GameService giữ 1 instance riêng.
+ */
 public class FloodFill {
 
+    // Chỉ chuyển sang song song khi board đủ lớn và vùng đã mở đủ nhiều (tránh overhead với click thường)
+    private static final int PARALLEL_MIN_BOARD = 1 << 20;
+    private static final int PARALLEL_MIN_OPENED = 1 << 15;
+    private static final int TILE = 256;
+
+    private final boolean parallel;
+    private int[] stack = new int[64];
+    private int top;
+    private int opened;
+
+    public FloodFill() {
+        this(ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /** parallel = false: luôn chạy tuần tự. */
+    public FloodFill(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     /**
-     * Trả về danh sách các ô (r,c) sẽ được mở khi flood-fill từ (r,c)
-     * Hàm này không tự reveal, chỉ tính toán và trả về list.
+     * Mở ô (r, c); nếu là ô 0 thì mở luôn cả vùng 0 liên thông và viền số của nó.
+     * @return số ô đã mở
      */
-    public static List<int[]> reveal(Board board, int r, int c) {
-        List<int[]> opened = new ArrayList<>();
+    public int reveal(Board board, int r, int c, IntConsumer onOpen) {
+        int start = board.index(r, c);
+        opened = 0;
+        if (!isClosed(board, start)) return 0;
 
-        if (board.getCell(r, c).getAdjacentMines() > 0) {
-            opened.add(new int[]{r, c});
+        if (board.getAdjacentMines(start) > 0) {
+            open(board, start, onOpen);
             return opened;
         }
 
-        Queue<int[]> q = new LinkedList<>();
-        boolean[][] visited = new boolean[board.getRows()][board.getCols()];
+        int rows = board.getRows(), cols = board.getCols();
+        boolean canSplit = parallel && board.size() >= PARALLEL_MIN_BOARD;
+        top = 0;
+        push(start);
+
+        while (top > 0) {
+            if (canSplit && opened >= PARALLEL_MIN_OPENED) {
+                revealParallel(board, onOpen);
+                break;
+            }
+            int seed = stack[--top];
+            if (!isClosed(board, seed)) continue;
+
+            int row = seed / cols;
+            int rowStart = row * cols, rowEnd = rowStart + cols - 1;
+
+            // kéo dài đoạn ô 0 sang 2 bên
+            int lo = seed, hi = seed;
+            while (lo > rowStart && isClosedZero(board, lo - 1)) lo--;
+            while (hi < rowEnd && isClosedZero(board, hi + 1)) hi++;
+
+            for (int i = lo; i <= hi; i++) open(board, i, onOpen);
+
+            // 2 ô viền cùng hàng (chắc chắn là ô số, nếu không đã được kéo vào đoạn)
+            if (lo > rowStart && isClosed(board, lo - 1)) open(board, lo - 1, onOpen);
+            if (hi < rowEnd && isClosed(board, hi + 1)) open(board, hi + 1, onOpen);
+
+            int from = Math.max(lo - 1, rowStart) - rowStart;
+            int to = Math.min(hi + 1, rowEnd) - rowStart;
+            if (row > 0) scanRow(board, (row - 1) * cols, from, to, onOpen);
+            if (row < rows - 1) scanRow(board, (row + 1) * cols, from, to, onOpen);
+        }
+        return opened;
+    }
+
+    /** Hàng kề đoạn vừa mở: ô số thì mở luôn, mỗi đoạn ô 0 liên tiếp thì đẩy 1 seed. */
+    private void scanRow(Board board, int base, int from, int to, IntConsumer onOpen) {
+        boolean inRun = false;
+        for (int c = from; c <= to; c++) {
+            int i = base + c;
+            if (isClosed(board, i)) {
+                if (board.getAdjacentMines(i) == 0) {
+                    if (!inRun) push(i);
+                    inRun = true;
+                    continue;
+                }
+                open(board, i, onOpen);
+            }
+            inRun = false;
+        }
+    }
+
+    private static boolean isClosed(Board board, int i) {
+        return !board.isRevealed(i) && !board.isFlagged(i);
+    }
+
+    private static boolean isClosedZero(Board board, int i) {
+        return isClosed(board, i) && board.getAdjacentMines(i) == 0;
+    }
+
+    private void open(Board board, int i, IntConsumer onOpen) {
+        board.setRevealed(i, true);
+        opened++;
+        onOpen.accept(i);
+    }
+
+    private void push(int i) {
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = i;
+    }
+
+    // ---------- Song song theo tile ----------
+
+    /** Giao các seed còn lại trong stack cho ForkJoinPool, rồi báo các ô đã mở qua callback. */
+    private void revealParallel(Board board, IntConsumer onOpen) {
+        ConcurrentLinkedQueue<int[]> results = new ConcurrentLinkedQueue<>();
+        TileTask root = new TileTask(null, board, -1, Arrays.copyOf(stack, top), results);
+        top = 0;
+        ForkJoinPool.commonPool().invoke(root);
+
+        for (int[] part : results) {
+            for (int i : part) {
+                opened++;
+                onOpen.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Lan vùng 0 trong 1 tile bằng scanline như bản tuần tự, nhưng đoạn bị cắt ở biên tile.
+     * Seed ô 0 nằm ở tile khác được gom lại theo tile và fork thành task con.
+     * Dùng CountedCompleter nên không có join lồng nhau dù vùng đi qua rất nhiều tile.
+     */
+    private static final class TileTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int tile;
+        private final ConcurrentLinkedQueue<int[]> results;
+        private int[] seeds;
+        private int seedCount;
+
+        TileTask(CountedCompleter<?> parent, Board board, int tile, int[] seeds,
+                 ConcurrentLinkedQueue<int[]> results) {
+            super(parent);
+            this.board = board;
+            this.tile = tile;
+            this.seeds = seeds;
+            this.seedCount = seeds.length;
+            this.results = results;
+        }
+
+        @Override
+        public void compute() {
+            int rows = board.getRows(), cols = board.getCols();
+            int tilesPerRow = (cols + TILE - 1) / TILE;
+            Map<Integer, IntBuffer> outgoing = new HashMap<>();
+            IntBuffer opened = new IntBuffer();
+
+            if (tile < 0) {
+                // task gốc: chỉ chia seed ban đầu về đúng tile
+                for (int k = 0; k < seedCount; k++) {
+                    int i = seeds[k];
+                    outgoing.computeIfAbsent(tileOf(i, cols, tilesPerRow), t -> new IntBuffer()).add(i);
+                }
+                seedCount = 0;
+            }
 
-        q.add(new int[]{r, c});
-        visited[r][c] = true;
+            int c0 = (tile % tilesPerRow) * TILE, c1 = Math.min(c0 + TILE, cols) - 1;
+            int r0 = (tile / tilesPerRow) * TILE, r1 = Math.min(r0 + TILE, rows) - 1;
 
-        while (!q.isEmpty()) {
-            int[] cur = q.poll();
-            int x = cur[0], y = cur[1];
-            opened.add(cur);
+            while (seedCount > 0) {
+                int seed = seeds[--seedCount];
+                if (!isClosed(board, seed)) continue;
 
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dy = -1; dy <= 1; dy++) {
-                    int nx = x + dx, ny = y + dy;
+                int row = seed / cols;
+                int base = row * cols;
+                int lo = seed - base, hi = lo;
+                while (lo > c0 && isClosedZero(board, base + lo - 1)) lo--;
+                while (hi < c1 && isClosedZero(board, base + hi + 1)) hi++;
 
-                    if (nx < 0 || ny < 0 || nx >= board.getRows() || ny >= board.getCols()) continue;
-                    if (visited[nx][ny]) continue;
+                for (int c = lo; c <= hi; c++) {
+                    if (board.tryReveal(base + c)) opened.add(base + c);
+                }
 
-                    visited[nx][ny] = true;
+                if (lo > 0) visit(base + lo - 1, false, r0, r1, c0, c1, opened, outgoing);
+                if (hi < cols - 1) visit(base + hi + 1, false, r0, r1, c0, c1, opened, outgoing);
 
-                    if (board.getCell(nx, ny).getAdjacentMines() == 0) {
-                        q.add(new int[]{nx, ny});
-                    } else {
-                        opened.add(new int[]{nx, ny});
+                int from = Math.max(lo - 1, 0), to = Math.min(hi + 1, cols - 1);
+                for (int nr = row - 1; nr <= row + 1; nr += 2) {
+                    if (nr < 0 || nr >= rows) continue;
+                    boolean inRun = false;
+                    for (int c = from; c <= to; c++) {
+                        inRun = visit(nr * cols + c, inRun, r0, r1, c0, c1, opened, outgoing);
                     }
                 }
             }
+
+            if (opened.size > 0) results.add(opened.toArray());
+
+            for (Map.Entry<Integer, IntBuffer> e : outgoing.entrySet()) {
+                addToPendingCount(1);
+                new TileTask(this, board, e.getKey(), e.getValue().toArray(), results).fork();
+            }
+            tryComplete();
         }
 
-        return opened;
+        /**
+         * Xử lý 1 ô kề đoạn vừa mở: ô số thì mở, ô 0 thì thành seed (trong tile) hoặc gửi sang tile khác.
+         * @return ô này có đang nằm trong 1 đoạn ô 0 đã đẩy seed hay không
+         */
+        private boolean visit(int i, boolean inRun, int r0, int r1, int c0, int c1,
+                              IntBuffer opened, Map<Integer, IntBuffer> outgoing) {
+            if (!isClosed(board, i)) return false;
+            if (board.getAdjacentMines(i) != 0) {
+                if (board.tryReveal(i)) opened.add(i);
+                return false;
+            }
+            if (inRun) return true;
+
+            int cols = board.getCols();
+            int r = i / cols, c = i - r * cols;
+            if (r0 <= r && r <= r1 && c0 <= c && c <= c1) {
+                if (seedCount == seeds.length) seeds = Arrays.copyOf(seeds, Math.max(16, seedCount * 2));
+                seeds[seedCount++] = i;
+            } else {
+                int tilesPerRow = (cols + TILE - 1) / TILE;
+                outgoing.computeIfAbsent(tileOf(i, cols, tilesPerRow), t -> new IntBuffer()).add(i);
+            }
+            return true;
+        }
+
+        private static int tileOf(int i, int cols, int tilesPerRow) {
+            int r = i / cols, c = i - r * cols;
+            return (r / TILE) * tilesPerRow + c / TILE;
+        }
+    }
+
+    private static final class IntBuffer {
+        int[] data = new int[16];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
     }
 }
@@ -0,0 +1,23 @@
+package service;
+
+/**
+ * Nhận thông báo khi board của GameService thay đổi.
+ * Dùng để cập nhật dần (AI frontier, UI...) thay vì quét lại cả board sau mỗi nước đi.
+ */
+public interface GameListener {
+
+    /** Trạng thái mở/cờ của ô index (r * cols + c) vừa thay đổi. */
+    void cellChanged(int index);
+
+    /**
+     * Gọi 1 lần sau mỗi nước đi (reveal, flag, chord, lượt AI gộp), undo hoặc redo,
+     * với toàn bộ ô đã đổi trong lần đó: cells[0..count-1]. Mảng chỉ để đọc, không giữ lại.
+     * Dùng khi chỉ cần cập nhật theo từng action (vd. vẽ lại UI), không cần theo từng ô.
+     */
+    default void cellsChanged(int[] cells, int count) {
+    }
+
+    /** Board bị thay mới (new game, load board): mọi dữ liệu dẫn xuất cần dựng lại. */
+    default void boardReset() {
+    }
+}
@@ -0,0 +1,457 @@
+package service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import model.Board;
+import model.GameConfig;
+
+/**
+ * Server nhiều người chơi trên localhost: mỗi người 1 GameService, nói chuyện qua TCP bằng giao thức dòng (ASCII).
+ *
+ * - 1 thread duy nhất với NIO Selector phục vụ mọi kết nối và mọi ván => các ván không cần đồng bộ gì,
+ *   và chi phí mỗi ván chỉ là GameService (board 1 byte / ô + lịch sử undo bị giới hạn nhỏ).
+ * - Ván không hoạt động quá idleTimeout bị bỏ khỏi bộ nhớ; nếu có spoolDir thì được ghi ra file session
+ *   (SaveLoadService) và tự load lại khi client gửi lệnh tiếp.
+ * - Trả lời mỗi lệnh chỉ gồm các ô đã đổi.
+ *
+ * Giao thức (mỗi lệnh / trả lời là 1 dòng kết thúc bằng '\n'):
+ *   NEW <EASY|...|rowsxcolsxmines> [seed]  -> OK <id> <rows> <cols> <mines>
+ *   OPEN <id>                               -> OK <id> <rows> <cols> <mines>, rồi 1 dòng diff với mọi ô đã mở / cắm cờ
+ *   R <row> <col>   (reveal)                -> diff
+ *   F <row> <col>   (flag / bỏ cờ)          -> diff
+ *   C <row> <col>   (chord)                 -> diff
+ *   U  (undo)  |  D  (redo)                 -> diff
+ *   QUIT                                    -> đóng kết nối (ván vẫn giữ đến khi bị evict)
+ *
+ *   diff = <PLAYING|WON|LOST> <minesLeft> <count> <index>:<code> ...
+ *   code: 0..8 = ô đã mở, * = mìn đã mở, F = cờ, . = ô đóng (sau undo); index = row * cols + col
+ *   lỗi: ERR <message>
+ */
+public class GameServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7878;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60_000L;
+
+    // lịch sử undo mỗi ván: đủ cho vài nghìn nước đi, nhỏ hơn nhiều so với mặc định 64 MiB của GameService
+    static final long SESSION_HISTORY_LIMIT = 256L << 10;
+    // board lớn hơn thế này thì 1 người chơi đã chiếm quá nhiều bộ nhớ của server
+    static final int MAX_SESSION_CELLS = 1 << 20;
+
+    private static final int MAX_LINE = 256;
+    // client không đọc trả lời mà out vượt mức này thì ngừng đọc lệnh của nó cho tới khi gửi bớt được
+    private static final int MAX_PENDING_OUT = 1 << 20;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    /** 1 ván trên server. */
+    private static final class Session {
+        final long id;
+        GameService game;
+        long lastActive;
+
+        Session(long id, GameService game, long now) {
+            this.id = id;
+            this.game = game;
+            this.lastActive = now;
+        }
+    }
+
+    /** Trạng thái của 1 kết nối. */
+    private static final class Client {
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        ByteBuffer out = ByteBuffer.allocate(512);
+        long sessionId;
+        boolean bound;
+        boolean closing;
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final long idleTimeoutMillis;
+    private final Path spoolDir;
+    private final SecureRandom ids = new SecureRandom();
+
+    private final Map<Long, Session> sessions = new HashMap<>();
+    private long lastSweep;
+    private volatile boolean running;
+    private final StringBuilder reply = new StringBuilder(256);
+
+    // Chỉ có 1 thread nên mọi ván dùng chung 1 listener + 1 buffer ô đã đổi của lệnh đang xử lý
+    private int[] changed = new int[256];
+    private int changedCount;
+    private final GameListener changeCollector = new GameListener() {
+        @Override
+        public void cellChanged(int index) {
+            // gom theo cả lệnh ở cellsChanged
+        }
+
+        @Override
+        public void cellsChanged(int[] cells, int count) {
+            ensureChanged(count);
+            System.arraycopy(cells, 0, changed, changedCount, count);
+            changedCount += count;
+        }
+    };
+
+    private void ensureChanged(int extra) {
+        if (changedCount + extra > changed.length) {
+            changed = Arrays.copyOf(changed, Math.max(changed.length * 2, changedCount + extra));
+        }
+    }
+
+    /**
+     * @param port              cổng trên localhost (0 = tự chọn)
+     * @param idleTimeoutMillis ván không có lệnh nào trong khoảng này sẽ bị bỏ khỏi bộ nhớ
+     * @param spoolDir          thư mục ghi ván bị evict (null = bỏ hẳn)
+     */
+    public GameServer(int port, long idleTimeoutMillis, Path spoolDir) throws IOException {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.spoolDir = spoolDir;
+        if (spoolDir != null) Files.createDirectories(spoolDir);
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Số ván đang nằm trong bộ nhớ (không tính ván đã spool ra file). */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // ---------- Vòng lặp chính ----------
+
+    /** Chạy vòng lặp trên thread hiện tại đến khi close(). */
+    public void run() throws IOException {
+        running = true;
+        lastSweep = System.currentTimeMillis();
+        while (running) {
+            selector.select(SWEEP_INTERVAL_MILLIS);
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    if (key.isValid() && key.isReadable()) read(key);
+                    if (key.isValid() && key.isWritable()) write(key);
+                } catch (IOException e) {
+                    // client ngắt kết nối giữa chừng: chỉ đóng kết nối đó
+                    if (key.channel() != server) closeQuietly(key);
+                } catch (RuntimeException e) {
+                    // lỗi bất ngờ khi xử lý 1 kết nối: không để nó dừng vòng lặp (và mọi ván khác)
+                    System.err.println("Connection error: " + e);
+                    if (key.channel() != server) closeQuietly(key);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+                evictIdle(now);
+                lastSweep = now;
+            }
+        }
+        for (SelectionKey key : selector.keys()) closeQuietly(key);
+        selector.close();
+        // tắt server: spool hết các ván còn trong bộ nhớ để lần chạy sau OPEN lại được
+        evictIdle(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch = server.accept();
+        if (ch == null) return;
+        ch.configureBlocking(false);
+        ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ch.register(selector, SelectionKey.OP_READ, new Client());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel ch = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+
+        if (ch.read(client.in) < 0) {
+            closeQuietly(key);
+            return;
+        }
+
+        // tách từng dòng trong in
+        ByteBuffer in = client.in;
+        in.flip();
+        int start = 0;
+        for (int i = 0; i < in.limit(); i++) {
+            if (in.get(i) != '\n') continue;
+            String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII).trim();
+            start = i + 1;
+            if (!line.isEmpty()) handle(client, line);
+            if (client.closing) break;
+        }
+        in.position(start);
+        in.compact();
+        if (!in.hasRemaining()) {
+            // 1 dòng dài hơn MAX_LINE: không phải client hợp lệ
+            send(client, "ERR line too long");
+            client.closing = true;
+        }
+
+        flush(key, client);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        flush(key, (Client) key.attachment());
+    }
+
+    private void flush(SelectionKey key, Client client) throws IOException {
+        ByteBuffer out = client.out;
+        out.flip();
+        ((SocketChannel) key.channel()).write(out);
+        out.compact();
+
+        boolean pending = out.position() > 0;
+        if (!pending && client.closing) {
+            closeQuietly(key);
+            return;
+        }
+        int ops = pending ? SelectionKey.OP_WRITE : 0;
+        if (!client.closing && out.position() < MAX_PENDING_OUT) ops |= SelectionKey.OP_READ;
+        key.interestOps(ops);
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // đang đóng rồi
+        }
+    }
+
+    // ---------- Xử lý lệnh ----------
+
+    private void handle(Client client, String line) {
+        String[] p = line.split("\\s+");
+        String cmd = p[0].toUpperCase();
+        Session s = null;
+        try {
+            switch (cmd) {
+                case "NEW":
+                    newSession(client, p);
+                    return;
+                case "OPEN":
+                    openSession(client, p);
+                    return;
+                case "QUIT":
+                    client.closing = true;
+                    return;
+                default:
+                    break;
+            }
+
+            s = client.bound ? lookup(client.sessionId) : null;
+            if (s == null) {
+                send(client, "ERR no game (use NEW or OPEN)");
+                return;
+            }
+            GameService game = s.game;
+            changedCount = 0;
+            switch (cmd) {
+                case "R":
+                    game.reveal(intArg(p, 1), intArg(p, 2));
+                    break;
+                case "F":
+                    game.toggleFlag(intArg(p, 1), intArg(p, 2));
+                    break;
+                case "C":
+                    game.chord(intArg(p, 1), intArg(p, 2));
+                    break;
+                case "U":
+                    game.undo();
+                    break;
+                case "D":
+                    game.redo();
+                    break;
+                default:
+                    send(client, "ERR unknown command " + p[0]);
+                    return;
+            }
+            sendDiff(client, game, changed, changedCount);
+        } catch (IllegalArgumentException e) {
+            send(client, "ERR " + e.getMessage());
+        } catch (IOException e) {
+            send(client, "ERR storage: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // lỗi bất ngờ giữa 1 lệnh: ván có thể đã hỏng dở dang => chỉ bỏ ván đó, server chạy tiếp
+            System.err.println("Command '" + line + "' failed: " + e);
+            if (s != null) {
+                sessions.remove(s.id);
+                client.bound = false;
+                send(client, "ERR internal error, game " + Long.toHexString(s.id) + " closed");
+            } else {
+                send(client, "ERR internal error");
+            }
+        }
+    }
+
+    private void newSession(Client client, String[] p) {
+        if (p.length < 2) throw new IllegalArgumentException("usage: NEW <config> [seed]");
+        GameConfig config = GameConfig.parse(p[1]);
+        if (config.cells() > MAX_SESSION_CELLS) {
+            throw new IllegalArgumentException("board too large (max " + MAX_SESSION_CELLS + " cells)");
+        }
+        GameService game = p.length > 2 ? new GameService(config, Long.parseLong(p[2])) : new GameService(config);
+
+        long id;
+        do {
+            id = ids.nextLong() & Long.MAX_VALUE;
+        } while (sessions.containsKey(id));
+
+        Session s = new Session(id, attach(game), System.currentTimeMillis());
+        sessions.put(id, s);
+        bind(client, s);
+    }
+
+    private void openSession(Client client, String[] p) throws IOException {
+        if (p.length < 2) throw new IllegalArgumentException("usage: OPEN <id>");
+        long id = Long.parseUnsignedLong(p[1], 16);
+        Session s = lookup(id);
+        if (s == null) throw new IllegalArgumentException("unknown game " + p[1]);
+        bind(client, s);
+
+        // gửi lại mọi ô không còn đóng (client vừa kết nối lại)
+        Board board = s.game.getBoard();
+        changedCount = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.isRevealed(i) || board.isFlagged(i)) {
+                ensureChanged(1);
+                changed[changedCount++] = i;
+            }
+        }
+        sendDiff(client, s.game, changed, changedCount);
+    }
+
+    private void bind(Client client, Session s) {
+        client.sessionId = s.id;
+        client.bound = true;
+        GameConfig config = s.game.getConfig();
+        send(client, "OK " + Long.toHexString(s.id) + " " + config.rows + " " + config.cols + " " + config.mines);
+    }
+
+    private GameService attach(GameService game) {
+        game.setHistoryLimit(SESSION_HISTORY_LIMIT);
+        game.addListener(changeCollector);
+        return game;
+    }
+
+    /** Ván theo id, load lại từ spool nếu đã bị evict. null nếu không có. */
+    private Session lookup(long id) throws IOException {
+        long now = System.currentTimeMillis();
+        Session s = sessions.get(id);
+        if (s == null && spoolDir != null) {
+            Path file = spoolFile(id);
+            if (Files.exists(file)) {
+                GameService game;
+                try {
+                    game = SaveLoadService.loadSession(file.toString());
+                } catch (RuntimeException e) {
+                    // file spool hỏng: cất sang .corrupt để lần sau không đọc lại nữa
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    throw new IOException("corrupt spooled game " + Long.toHexString(id), e);
+                }
+                s = new Session(id, attach(game), now);
+                Files.delete(file);
+                sessions.put(id, s);
+            }
+        }
+        if (s != null) s.lastActive = now;
+        return s;
+    }
+
+    private static int intArg(String[] p, int k) {
+        if (p.length <= k) throw new IllegalArgumentException("missing argument");
+        return Integer.parseInt(p[k]);
+    }
+
+    // ---------- Eviction ----------
+
+    private void evictIdle(long now) {
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            Session s = it.next();
+            if (now - s.lastActive < idleTimeoutMillis) continue;
+            it.remove();
+            if (spoolDir == null) continue;
+            try {
+                SaveLoadService.saveSession(s.game, spoolFile(s.id).toString());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Cannot spool game " + Long.toHexString(s.id) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Path spoolFile(long id) {
+        return spoolDir.resolve(Long.toHexString(id) + ".mss");
+    }
+
+    // ---------- Trả lời ----------
+
+    private void sendDiff(Client client, GameService game, int[] cells, int count) {
+        Board board = game.getBoard();
+        StringBuilder sb = reply;
+        sb.setLength(0);
+        sb.append(game.getState()).append(' ').append(game.getRemainingMines()).append(' ').append(count);
+        for (int k = 0; k < count; k++) {
+            int i = cells[k];
+            sb.append(' ').append(i).append(':').append(code(board, i));
+        }
+        send(client, sb);
+    }
+
+    private static char code(Board board, int i) {
+        if (board.isRevealed(i)) return board.isMine(i) ? '*' : (char) ('0' + board.getAdjacentMines(i));
+        return board.isFlagged(i) ? 'F' : '.';
+    }
+
+    private void send(Client client, CharSequence line) {
+        int need = line.length() + 1;
+        if (client.out.remaining() < need) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(client.out.capacity() * 2, client.out.position() + need));
+            client.out.flip();
+            bigger.put(client.out);
+            client.out = bigger;
+        }
+        for (int k = 0; k < line.length(); k++) {
+            client.out.put((byte) line.charAt(k));
+        }
+        client.out.put((byte) '\n');
+    }
+}
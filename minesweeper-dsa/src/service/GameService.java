@@ -2,75 +2,334 @@ package service;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
+import java.util.SplittableRandom;
 import model.*;
 
 public class GameService {
 
+    // Board lớn hơn ngưỡng này sẽ được sinh lazy theo chunk
+    private static final int LAZY_THRESHOLD = 1 << 20;
+
     private Board board;
     private GameState state;
-    private Difficulty difficulty;
+    private final GameConfig config;
+    private final SplittableRandom random;
+    // seed sinh ra board hiện tại; vị trí dời mìn ở first click cũng suy ra từ seed này
+    private long boardSeed;
+    private final FloodFill floodFill = new FloodFill();
     private boolean firstClick = true;
+    // true: click đầu tiên luôn mở ra 1 ô 0 (không chỉ tránh mìn)
+    private boolean firstClickOpensZero = false;
+
+    // Bộ đếm cập nhật dần theo từng thay đổi => checkWin / getFlagCount là O(1)
+    private int revealedSafe;
+    private int flagCount;
 
     // ----- Undo / Redo -----
+    // (package-private để SaveLoadService lưu / khôi phục được lịch sử)
 
-    private enum ActionType {
+    enum ActionType {
         REVEAL,
-        FLAG_TOGGLE
-    }
-
-    private static class CellChange {
-        int row, col;
-        boolean prevRevealed, prevFlagged;
-        boolean newRevealed, newFlagged;
-
-        CellChange(int row, int col,
-                   boolean prevRevealed, boolean prevFlagged,
-                   boolean newRevealed, boolean newFlagged) {
-            this.row = row;
-            this.col = col;
-            this.prevRevealed = prevRevealed;
-            this.prevFlagged = prevFlagged;
-            this.newRevealed = newRevealed;
-            this.newFlagged = newFlagged;
-        }
+        FLAG_TOGGLE,
+        BATCH,      // nhiều cờ + nhiều ô mở cùng lúc (AI), undo 1 lần
+        CHORD       // mở mọi ô kề chưa cắm cờ của 1 ô số đã đủ cờ
     }
 
-    private static class GameAction {
-        ActionType type;
-        List<CellChange> changes = new ArrayList<>();
+    /**
+     * 1 action trong lịch sử: các ô bị chạm lưu dạng mảng nguyên thuỷ (index + 4 bit trước/sau),
+     * không phải 1 object cho mỗi ô => ~5 byte / ô, undo/redo là 1 vòng lặp trên mảng.
+     */
+    static class GameAction {
+        static final int PREV_REVEALED = 1;
+        static final int PREV_FLAGGED = 1 << 1;
+        static final int NEW_REVEALED = 1 << 2;
+        static final int NEW_FLAGGED = 1 << 3;
+
+        final ActionType type;
         GameState prevState;
         GameState newState;
+        int[] cells = new int[4];
+        byte[] bits = new byte[4];
+        int size;
 
         GameAction(ActionType type) {
             this.type = type;
         }
+
+        void add(int cell, boolean prevRevealed, boolean prevFlagged, boolean newRevealed, boolean newFlagged) {
+            add(cell, (prevRevealed ? PREV_REVEALED : 0) | (prevFlagged ? PREV_FLAGGED : 0)
+                    | (newRevealed ? NEW_REVEALED : 0) | (newFlagged ? NEW_FLAGGED : 0));
+        }
+
+        void add(int cell, int b) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                bits = Arrays.copyOf(bits, size * 2);
+            }
+            cells[size] = cell;
+            bits[size++] = (byte) b;
+        }
+
+        boolean isEmpty() { return size == 0; }
+
+        /** Cắt mảng về đúng kích thước trước khi cất vào lịch sử. */
+        void trim() {
+            if (cells.length != size) {
+                cells = Arrays.copyOf(cells, size);
+                bits = Arrays.copyOf(bits, size);
+            }
+        }
+
+        /** Ước lượng bộ nhớ (object + 2 mảng). */
+        long bytes() {
+            return 64 + 5L * cells.length;
+        }
     }
 
-    private Deque<GameAction> undoStack = new ArrayDeque<>();
-    private Deque<GameAction> redoStack = new ArrayDeque<>();
+    // Lịch sử bị giới hạn theo bộ nhớ: vượt giới hạn thì bỏ action cũ nhất (luôn giữ action mới nhất)
+    public static final long DEFAULT_HISTORY_LIMIT = 64L << 20;
+
+    private final Deque<GameAction> undoStack = new ArrayDeque<>();
+    private final Deque<GameAction> redoStack = new ArrayDeque<>();
+    private long historyBytes;
+    private long historyLimit = DEFAULT_HISTORY_LIMIT;
 
     // -----------------------
 
+    private final List<GameListener> listeners = new ArrayList<>();
+
+    // != null khi đang ghi nhật ký nước đi (replay)
+    private ReplayLog replayLog;
+    private boolean recording;
+
     public GameService(Difficulty diff) {
-        this.difficulty = diff;
-        reset();
+        this(GameConfig.of(diff));
+    }
+
+    public GameService(GameConfig config) {
+        this(config, new SplittableRandom());
+    }
+
+    /** Seed cố định => cùng chuỗi board + vị trí dời mìn first click (dùng cho mô phỏng, replay). */
+    public GameService(GameConfig config, long seed) {
+        this(config, new SplittableRandom(seed));
+    }
+
+    private GameService(GameConfig config, SplittableRandom random) {
+        this(config, random, random.nextLong());
+    }
+
+    private GameService(GameConfig config, SplittableRandom random, long boardSeed) {
+        this.config = config;
+        this.random = random;
+        reset(boardSeed);
+    }
+
+    /** Ván đầu tiên dựng thẳng từ boardSeed (Replayer), không sinh trước 1 board ngẫu nhiên rồi bỏ đi. */
+    static GameService fromBoardSeed(GameConfig config, long boardSeed) {
+        return new GameService(config, new SplittableRandom(), boardSeed);
+    }
+
+    /** Dùng board đã có (fromSession), restoreSession dựng bộ đếm + mọi trạng thái ngay sau đó. */
+    private GameService(GameConfig config, Board loaded) {
+        this.config = config;
+        this.random = new SplittableRandom();
+        this.board = loaded;
+    }
+
+    /** Phiên đọc từ file (SaveLoadService): dùng thẳng board đã đọc, không sinh 1 board ngẫu nhiên rồi bỏ đi. */
+    static GameService fromSession(GameConfig config, Board loaded, GameState savedState, boolean savedFirstClick,
+                                   boolean openZero, long seed, List<GameAction> undo, List<GameAction> redo) {
+        GameService service = new GameService(config, loaded);
+        service.restoreSession(loaded, savedState, savedFirstClick, openZero, seed, undo, redo);
+        return service;
     }
 
     public void reset() {
-        board = new Board(difficulty.rows, difficulty.cols);
-        BoardGenerator.generate(board, difficulty.mines);
+        reset(random.nextLong());
+    }
+
+    /** Ván mới với board sinh từ boardSeed (cùng seed => cùng board, dùng cho replay). */
+    public void reset(long boardSeed) {
+        this.boardSeed = boardSeed;
+        board = newBoard();
         state = GameState.PLAYING;
         firstClick = true;
+        revealedSafe = 0;
+        flagCount = 0;
 
-        undoStack.clear();
-        redoStack.clear();
+        clearHistory();
+        if (replayLog != null) replayLog.close();
+        replayLog = recording ? new ReplayLog(config, boardSeed, firstClickOpensZero) : null;
+        fireBoardReset();
+    }
+
+    /**
+     * Thay board hiện tại bằng 1 board đã lưu (cùng kích thước), dựng lại bộ đếm và trạng thái.
+     * Lịch sử undo/redo của board cũ bị xoá.
+     */
+    public void loadBoard(Board loaded) {
+        checkSize(loaded);
+        int revealed = loaded.countRevealedSafe();
+        GameState loadedState;
+        if (loaded.countRevealedMines() > 0) loadedState = GameState.LOST;
+        else if (revealed == loaded.size() - config.mines) loadedState = GameState.WON;
+        else loadedState = GameState.PLAYING;
+        replaceBoard(loaded, loadedState, revealed, loaded.countFlagged());
+    }
+
+    /**
+     * Như loadBoard(Board), nhưng dùng state + bộ đếm lưu trong header (file mapped) nếu có,
+     * khỏi quét cả board (với file map, mỗi lần quét chạm tới mọi page của file).
+     */
+    public void loadBoard(SaveLoadService.SavedGame saved) {
+        if (!saved.hasCounters()) {
+            loadBoard(saved.board);
+            return;
+        }
+        checkSize(saved.board);
+        replaceBoard(saved.board, saved.state, saved.revealedSafe, saved.flagCount);
+    }
+
+    private void checkSize(Board loaded) {
+        if (loaded.getRows() != config.rows || loaded.getCols() != config.cols) {
+            throw new IllegalArgumentException("Board size does not match " + config);
+        }
+    }
+
+    private void replaceBoard(Board loaded, GameState loadedState, int revealed, int flags) {
+        board = loaded;
+        revealedSafe = revealed;
+        flagCount = flags;
+        firstClick = revealedSafe == 0;
+        state = loadedState;
+
+        clearHistory();
+        // board load từ file không dựng lại được từ seed => dừng ghi
+        stopRecording();
+        fireBoardReset();
+    }
+
+    // ---------- Session (SaveLoadService) ----------
+
+    boolean isFirstClick() { return firstClick; }
+
+    /** Lịch sử undo, phần tử cũ nhất trước. */
+    Iterable<GameAction> undoHistory() { return undoStack::descendingIterator; }
+
+    /** Lịch sử redo, phần tử sẽ redo cuối cùng trước. */
+    Iterable<GameAction> redoHistory() { return redoStack::descendingIterator; }
+
+    /**
+     * Khôi phục 1 phiên đã lưu: board, trạng thái, first click, seed và 2 stack lịch sử
+     * (mỗi stack theo thứ tự cũ nhất trước, như undoHistory / redoHistory).
+     */
+    void restoreSession(Board loaded, GameState savedState, boolean savedFirstClick, boolean openZero,
+                        long seed, List<GameAction> undo, List<GameAction> redo) {
+        loadBoard(loaded);
+        state = savedState;
+        firstClick = savedFirstClick;
+        firstClickOpensZero = openZero;
+        boardSeed = seed;
+        for (GameAction a : redo) {
+            a.trim();
+            redoStack.push(a);
+            historyBytes += a.bytes();
+        }
+        for (GameAction a : undo) {
+            a.trim();
+            undoStack.push(a);
+            historyBytes += a.bytes();
+        }
+        evictHistory();
+    }
+
+    // ---------- Replay log ----------
+
+    /**
+     * Bắt đầu ghi nhật ký nước đi cho ván hiện tại (phải trước click đầu tiên);
+     * các ván sau reset() cũng được ghi, mỗi ván 1 log mới.
+     * Muốn ghi thẳng xuống file trong lúc chơi thì gọi streamTo(file) trên log trả về
+     * (ván mới sau reset() cần streamTo lại; stream của log cũ được đóng khi reset / stopRecording).
+     */
+    public ReplayLog startRecording() {
+        if (!firstClick || canUndo() || canRedo()) {
+            throw new IllegalStateException("Recording must start before the first move");
+        }
+        recording = true;
+        replayLog = new ReplayLog(config, boardSeed, firstClickOpensZero);
+        return replayLog;
+    }
+
+    public void stopRecording() {
+        recording = false;
+        if (replayLog != null) replayLog.close();
+        replayLog = null;
+    }
+
+    /** Log của ván hiện tại, null nếu không ghi. */
+    public ReplayLog getReplayLog() { return replayLog; }
+
+    private void record(byte type, int cell) {
+        if (replayLog != null) replayLog.append(type, cell);
+    }
+
+    // ---------- Listener ----------
+
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireCellChanged(int index) {
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).cellChanged(index);
+        }
+    }
+
+    /** Cuối mỗi nước đi / undo / redo: báo 1 lần danh sách ô đã đổi (lấy thẳng từ GameAction). */
+    private void fireCellsChanged(GameAction action) {
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).cellsChanged(action.cells, action.size);
+        }
+    }
+
+    private void fireBoardReset() {
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).boardReset();
+        }
     }
 
     public GameState getState() { return state; }
     public Board getBoard() { return board; }
-    public Difficulty getDifficulty() { return difficulty; }
+    public GameConfig getConfig() { return config; }
+
+    /** null nếu là board custom. */
+    public Difficulty getDifficulty() { return config.getDifficulty(); }
+
+    public long getBoardSeed() { return boardSeed; }
+
+    private Board newBoard() {
+        if (config.cells() > LAZY_THRESHOLD) {
+            return BoardGenerator.createLazy(config.rows, config.cols, config.mines, boardSeed);
+        }
+        Board b = new Board(config.rows, config.cols);
+        BoardGenerator.generate(b, config.mines, boardSeed);
+        return b;
+    }
+
+    public boolean isFirstClickOpensZero() { return firstClickOpensZero; }
+    public void setFirstClickOpensZero(boolean openZero) {
+        this.firstClickOpensZero = openZero;
+        // chưa click đầu thì log đang ghi phải đổi theo (sau click đầu thì chế độ này chỉ ảnh hưởng ván sau)
+        if (replayLog != null && firstClick) replayLog.setFirstClickOpensZero(openZero);
+    }
 
     public boolean inBounds(int r, int c) {
         return 0 <= r && r < board.getRows() && 0 <= c && c < board.getCols();
@@ -85,6 +344,7 @@ public class GameService {
         Cell cell = board.getCell(r, c);
         if (cell.isRevealed()) return;
 
+        record(ReplayLog.FLAG, board.index(r, c));
         GameAction action = new GameAction(ActionType.FLAG_TOGGLE);
         action.prevState = state;
 
@@ -92,20 +352,19 @@ public class GameService {
         boolean prevFlagged = cell.isFlagged();
 
         cell.toggleFlag();
+        flagCount += cell.isFlagged() ? 1 : -1;
+        fireCellChanged(board.index(r, c));
 
         boolean newRevealed = cell.isRevealed();
         boolean newFlagged = cell.isFlagged();
 
         if (prevRevealed != newRevealed || prevFlagged != newFlagged) {
-            action.changes.add(new CellChange(
-                    r, c,
-                    prevRevealed, prevFlagged,
-                    newRevealed, newFlagged
-            ));
+            action.add(board.index(r, c), prevRevealed, prevFlagged, newRevealed, newFlagged);
         }
 
         action.newState = state; // state không đổi với flag
         pushAction(action);
+        fireCellsChanged(action);
     }
 
     // ========== REVEAL ==========
@@ -117,19 +376,34 @@ public class GameService {
         Cell cell = board.getCell(r, c);
         if (cell.isRevealed() || cell.isFlagged()) return;
 
+        record(ReplayLog.REVEAL, board.index(r, c));
         GameAction action = new GameAction(ActionType.REVEAL);
         action.prevState = state;
 
-        // Đảm bảo first click không dính mìn (optional)
+        revealInto(action, r, c);
+
+        if (state == GameState.PLAYING && checkWin()) {
+            state = GameState.WON;
+        }
+        action.newState = state;
+
+        if (!action.isEmpty()) {
+            pushAction(action);
+            fireCellsChanged(action);
+        }
+    }
+
+    /**
+     * Mở 1 ô đang đóng, ghi thay đổi vào action. Dính mìn thì state = LOST.
+     * Không kiểm tra thắng, không push action.
+     */
+    private void revealInto(GameAction action, int r, int c) {
+        Cell cell = board.getCell(r, c);
+
+        // Đảm bảo first click không dính mìn: dời mìn ra chỗ khác, không sinh lại board
         if (firstClick) {
             firstClick = false;
-            if (cell.isMine()) {
-                do {
-                    board = new Board(difficulty.rows, difficulty.cols);
-                    BoardGenerator.generate(board, difficulty.mines);
-                    cell = board.getCell(r, c);
-                } while (cell.isMine());
-            }
+            BoardGenerator.makeSafe(board, r, c, firstClickOpensZero, config.mines, new SplittableRandom(~boardSeed));
         }
 
         // Nếu là mìn
@@ -138,87 +412,153 @@ public class GameService {
             boolean prevFlagged = cell.isFlagged();
 
             cell.reveal();
+            fireCellChanged(board.index(r, c));
 
-            action.changes.add(new CellChange(
-                    r, c,
-                    prevRevealed, prevFlagged,
-                    cell.isRevealed(), cell.isFlagged()
-            ));
+            action.add(board.index(r, c), prevRevealed, prevFlagged, cell.isRevealed(), cell.isFlagged());
 
             state = GameState.LOST;
-            action.newState = state;
-            pushAction(action);
             return;
         }
 
         // Nếu là ô số 0 => FloodFill
         if (cell.getAdjacentMines() == 0) {
-            List<int[]> opened = FloodFill.reveal(board, r, c);
-
-            for (int[] p : opened) {
-                int rr = p[0], cc = p[1];
-                Cell ccCell = board.getCell(rr, cc);
-
-                if (!ccCell.isRevealed()) {
-                    boolean prevRevealed = ccCell.isRevealed();
-                    boolean prevFlagged = ccCell.isFlagged();
-
-                    ccCell.reveal();
-
-                    boolean newRevealed = ccCell.isRevealed();
-                    boolean newFlagged = ccCell.isFlagged();
-
-                    if (prevRevealed != newRevealed || prevFlagged != newFlagged) {
-                        action.changes.add(new CellChange(
-                                rr, cc,
-                                prevRevealed, prevFlagged,
-                                newRevealed, newFlagged
-                        ));
-                    }
-                }
-            }
+            // FloodFill mở ô ngay trên board, ở đây chỉ ghi lại thay đổi cho undo
+            revealedSafe += floodFill.reveal(board, r, c, i -> {
+                action.add(i, false, false, true, false);
+                fireCellChanged(i);
+            });
         } else {
             // ô số > 0
             boolean prevRevealed = cell.isRevealed();
             boolean prevFlagged = cell.isFlagged();
 
             cell.reveal();
+            revealedSafe++;
+            fireCellChanged(board.index(r, c));
 
             boolean newRevealed = cell.isRevealed();
             boolean newFlagged = cell.isFlagged();
 
             if (prevRevealed != newRevealed || prevFlagged != newFlagged) {
-                action.changes.add(new CellChange(
-                        r, c,
-                        prevRevealed, prevFlagged,
-                        newRevealed, newFlagged
-                ));
+                action.add(board.index(r, c), prevRevealed, prevFlagged, newRevealed, newFlagged);
             }
         }
+    }
+
+    // ========== CHORD ==========
+
+    /**
+     * Ô (r, c) là ô số đã mở và số cờ xung quanh đúng bằng số đó
+     * => mở tất cả ô kề còn đóng, chưa cắm cờ. 1 action, 1 lần kiểm tra thắng.
+     * Cờ cắm sai thì có thể dính mìn (như Minesweeper gốc).
+     */
+    public void chord(int r, int c) {
+        if (!inBounds(r, c)) return;
+        if (state != GameState.PLAYING) return;
 
-        if (checkWin()) {
+        int i = board.index(r, c);
+        if (!board.isRevealed(i) || board.isMine(i)) return;
+        int number = board.getAdjacentMines(i);
+        if (number == 0) return;
+
+        int rows = board.getRows(), cols = board.getCols();
+        int flagged = 0, closed = 0;
+        for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1); nc++) {
+                int ni = nr * cols + nc;
+                if (board.isFlagged(ni)) flagged++;
+                else if (!board.isRevealed(ni)) closed++;
+            }
+        }
+        if (flagged != number || closed == 0) return;
+
+        record(ReplayLog.CHORD, i);
+        GameAction action = new GameAction(ActionType.CHORD);
+        action.prevState = state;
+
+        for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1) && state == GameState.PLAYING; nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1) && state == GameState.PLAYING; nc++) {
+                int ni = nr * cols + nc;
+                // ô có thể vừa được flood fill của ô kề trước đó mở
+                if (board.isRevealed(ni) || board.isFlagged(ni)) continue;
+                revealInto(action, nr, nc);
+            }
+        }
+
+        if (state == GameState.PLAYING && checkWin()) {
             state = GameState.WON;
         }
         action.newState = state;
 
-        if (!action.changes.isEmpty()) {
+        if (!action.isEmpty()) {
             pushAction(action);
+            fireCellsChanged(action);
         }
     }
 
-    public boolean checkWin() {
-        int total = board.getRows() * board.getCols();
-        int mines = 0;
-        int revealed = 0;
-
-        for (int i = 0; i < board.getRows(); i++) {
-            for (int j = 0; j < board.getCols(); j++) {
-                Cell c = board.getCell(i, j);
-                if (c.isMine()) mines++;
-                if (c.isRevealed()) revealed++;
+    // ========== BATCH ==========
+
+    /**
+     * Cắm cờ các ô flags[0..flagsCount-1] rồi mở các ô reveals[0..revealsCount-1] (index = r * cols + c),
+     * gộp thành 1 action duy nhất => 1 lần undo/redo, 1 lần kiểm tra thắng.
+     * Ô đã mở / đã cắm cờ bị bỏ qua; dính mìn thì dừng ngay.
+     * Mọi index được kiểm tra trước khi ghi replay / đổi board: 1 index sai thì cả lượt bị từ chối.
+     * @return số ô đã thay đổi
+     */
+    public int applyMoves(int[] flags, int flagsCount, int[] reveals, int revealsCount) {
+        checkIndices(flags, flagsCount);
+        checkIndices(reveals, revealsCount);
+        if (state != GameState.PLAYING) return 0;
+
+        if (replayLog != null) {
+            for (int k = 0; k < flagsCount; k++) record(ReplayLog.BATCH_FLAG, flags[k]);
+            for (int k = 0; k < revealsCount; k++) record(ReplayLog.BATCH_REVEAL, reveals[k]);
+            record(ReplayLog.BATCH_APPLY, -1);
+        }
+        GameAction action = new GameAction(ActionType.BATCH);
+        action.prevState = state;
+
+        for (int k = 0; k < flagsCount; k++) {
+            int i = flags[k];
+            if (board.isRevealed(i) || board.isFlagged(i)) continue;
+            board.setFlagged(i, true);
+            flagCount++;
+            fireCellChanged(i);
+            action.add(i, false, false, false, true);
+        }
+
+        for (int k = 0; k < revealsCount; k++) {
+            int i = reveals[k];
+            if (state != GameState.PLAYING) break;
+            if (board.isRevealed(i) || board.isFlagged(i)) continue;
+            revealInto(action, board.row(i), board.col(i));
+        }
+
+        if (state == GameState.PLAYING && checkWin()) {
+            state = GameState.WON;
+        }
+        action.newState = state;
+
+        if (!action.isEmpty()) {
+            pushAction(action);
+            fireCellsChanged(action);
+        }
+        return action.size;
+    }
+
+    private void checkIndices(int[] cells, int count) {
+        if (count < 0 || count > cells.length) {
+            throw new IndexOutOfBoundsException("Count " + count + " outside array of length " + cells.length);
+        }
+        for (int k = 0; k < count; k++) {
+            if (cells[k] < 0 || cells[k] >= board.size()) {
+                throw new IndexOutOfBoundsException("Cell " + cells[k] + " outside board of " + board.size() + " cells");
             }
         }
-        return revealed == total - mines;
+    }
+
+    public boolean checkWin() {
+        return revealedSafe == board.size() - getTotalMines();
     }
 
     public List<int[]> getNeighbors(int r, int c) {
@@ -236,19 +576,16 @@ public class GameService {
     // ---------- Thông tin mìn cho GUI ----------
 
     public int getTotalMines() {
-        return difficulty.mines;
+        return config.mines;
     }
 
     public int getFlagCount() {
-        int flags = 0;
-        for (int i = 0; i < board.getRows(); i++) {
-            for (int j = 0; j < board.getCols(); j++) {
-                if (board.getCell(i, j).isFlagged()) {
-                    flags++;
-                }
-            }
-        }
-        return flags;
+        return flagCount;
+    }
+
+    /** Số ô an toàn đã mở. */
+    public int getRevealedCount() {
+        return revealedSafe;
     }
 
     public int getRemainingMines() {
@@ -258,11 +595,40 @@ public class GameService {
     // ---------- Undo / Redo API ----------
 
     private void pushAction(GameAction action) {
+        action.trim();
         undoStack.push(action);
+        historyBytes += action.bytes();
         // mỗi action mới thì clear redo
+        for (GameAction a : redoStack) historyBytes -= a.bytes();
         redoStack.clear();
+        evictHistory();
+    }
+
+    /** Bỏ action cũ nhất (đáy stack undo) đến khi lịch sử nằm trong giới hạn; luôn giữ action mới nhất. */
+    private void evictHistory() {
+        while (historyBytes > historyLimit && undoStack.size() > 1) {
+            historyBytes -= undoStack.removeLast().bytes();
+        }
     }
 
+    private void clearHistory() {
+        undoStack.clear();
+        redoStack.clear();
+        historyBytes = 0;
+    }
+
+    /** Giới hạn bộ nhớ (ước lượng, byte) cho lịch sử undo/redo. */
+    public void setHistoryLimit(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("History limit must be >= 0");
+        historyLimit = bytes;
+        evictHistory();
+    }
+
+    public long getHistoryLimit() { return historyLimit; }
+
+    /** Bộ nhớ (ước lượng, byte) lịch sử đang dùng. */
+    public long getHistoryBytes() { return historyBytes; }
+
     public boolean canUndo() {
         return !undoStack.isEmpty();
     }
@@ -274,34 +640,51 @@ public class GameService {
     public boolean undo() {
         if (undoStack.isEmpty()) return false;
 
+        record(ReplayLog.UNDO, -1);
         GameAction action = undoStack.pop();
         // revert cells về prev
-        for (CellChange ch : action.changes) {
-            Cell cell = board.getCell(ch.row, ch.col);
-            cell.setRevealed(ch.prevRevealed);
-            cell.setFlagged(ch.prevFlagged);
+        int[] cells = action.cells;
+        byte[] bits = action.bits;
+        for (int k = 0; k < action.size; k++) {
+            applyCell(cells[k], (bits[k] & GameAction.PREV_REVEALED) != 0, (bits[k] & GameAction.PREV_FLAGGED) != 0);
         }
         // revert state
         state = action.prevState;
 
         redoStack.push(action);
+        fireCellsChanged(action);
         return true;
     }
 
     public boolean redo() {
         if (redoStack.isEmpty()) return false;
 
+        record(ReplayLog.REDO, -1);
         GameAction action = redoStack.pop();
         // set cells về new
-        for (CellChange ch : action.changes) {
-            Cell cell = board.getCell(ch.row, ch.col);
-            cell.setRevealed(ch.newRevealed);
-            cell.setFlagged(ch.newFlagged);
+        int[] cells = action.cells;
+        byte[] bits = action.bits;
+        for (int k = 0; k < action.size; k++) {
+            applyCell(cells[k], (bits[k] & GameAction.NEW_REVEALED) != 0, (bits[k] & GameAction.NEW_FLAGGED) != 0);
         }
         // set state về newState
         state = action.newState;
 
         undoStack.push(action);
+        fireCellsChanged(action);
         return true;
     }
+
+    /** Ghi trạng thái mở/cờ cho 1 ô và cập nhật bộ đếm theo chênh lệch. */
+    private void applyCell(int i, boolean revealed, boolean flagged) {
+        if (board.isRevealed(i) != revealed && !board.isMine(i)) {
+            revealedSafe += revealed ? 1 : -1;
+        }
+        if (board.isFlagged(i) != flagged) {
+            flagCount += flagged ? 1 : -1;
+        }
+        board.setRevealed(i, revealed);
+        board.setFlagged(i, flagged);
+        fireCellChanged(i);
+    }
 }
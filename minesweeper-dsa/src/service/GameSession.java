@@ -0,0 +1,233 @@
+package service;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import model.Board;
+import model.GameState;
+
+/**
+ * Cho nhiều thread dùng chung 1 ván (UI, AI tự chơi, spectator, metrics...).
+ *
+ * - Ghi: mọi lệnh (reveal / flag / chord / undo / redo / lượt AI...) được xếp vào 1 hàng đợi
+ *   và chạy lần lượt trên 1 writer thread duy nhất => GameService không bao giờ bị 2 thread ghi cùng lúc,
+ *   và không cần lock bên trong GameService.
+ * - Đọc: sau mỗi lệnh làm đổi ván, writer publish 1 {@link Snapshot} qua field volatile
+ *   => đọc state / bộ đếm không cần lock. Board không được copy: đọc các ô nhất quán thì dùng {@link #read}
+ *   (đọc lạc quan theo version, đọc lại nếu writer đang ghi).
+ * - Observer được gọi trên writer thread sau mỗi lệnh, kèm danh sách ô đã đổi (chỉ diff, không cả board).
+ *
+ * Sau khi tạo session, không được gọi thẳng vào GameService từ thread khác nữa, chỉ qua {@link #submit}.
+ */
+public class GameSession implements AutoCloseable {
+
+    /**
+     * State + bộ đếm của ván tại 1 version, không đổi sau khi publish.
+     * Riêng board là board đang chơi (không phải bản chụp), writer vẫn tiếp tục ghi lên nó:
+     * đọc thẳng có thể thấy ô đang ở giữa 1 lệnh. Cần đọc nhất quán thì dùng {@link GameSession#read}.
+     * Đọc thẳng chỉ dùng khi chấp nhận được điều đó, ví dụ UI vẽ canvas: ô nào vẽ ra giá trị cũ
+     * thì diff của lệnh đó tới observer ngay sau và ô được vẽ lại.
+     */
+    public static final class Snapshot {
+        public final long version;
+        public final Board board;
+        public final GameState state;
+        public final int remainingMines;
+        public final int revealedCount;
+        public final int flagCount;
+        public final boolean canUndo;
+        public final boolean canRedo;
+
+        Snapshot(long version, GameService game) {
+            this.version = version;
+            this.board = game.getBoard();
+            this.state = game.getState();
+            this.remainingMines = game.getRemainingMines();
+            this.revealedCount = game.getRevealedCount();
+            this.flagCount = game.getFlagCount();
+            this.canUndo = game.canUndo();
+            this.canRedo = game.canRedo();
+        }
+    }
+
+    /** Nhận cập nhật sau mỗi lệnh; chạy trên writer thread nên phải xử lý nhanh (hoặc chuyển sang thread khác). */
+    public interface Observer {
+
+        /** Các ô cells[0..count-1] đã đổi trong lệnh vừa chạy. Mảng chỉ để đọc, không giữ lại. */
+        void sessionUpdated(Snapshot snapshot, int[] cells, int count);
+
+        /** Board bị thay mới (reset / load): cần vẽ / dựng lại toàn bộ. */
+        default void boardReplaced(Snapshot snapshot) {
+        }
+    }
+
+    // đọc lạc quan thất bại quá số lần này (writer ghi liên tục) thì xếp hàng đọc trên writer
+    private static final int MAX_OPTIMISTIC_READS = 64;
+
+    private final GameService game;
+    private final ExecutorService writer;
+    private volatile Thread writerThread;
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+    // lẻ = writer đang chạy 1 lệnh; chẵn = board ổn định
+    private volatile long writeSeq;
+    private volatile Snapshot snapshot;
+
+    // ô đã đổi trong lệnh đang chạy (chỉ writer thread đụng tới)
+    private boolean executing;
+    private int[] changed = new int[64];
+    private int changedCount;
+    private boolean replaced;
+
+    public GameSession(GameService game) {
+        this.game = game;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "game-session");
+            t.setDaemon(true);
+            writerThread = t;
+            return t;
+        });
+        game.addListener(new GameListener() {
+            @Override
+            public void cellChanged(int index) {
+                // gom theo cả lệnh ở cellsChanged
+            }
+
+            @Override
+            public void cellsChanged(int[] cells, int count) {
+                if (changedCount + count > changed.length) {
+                    changed = Arrays.copyOf(changed, Math.max(changed.length * 2, changedCount + count));
+                }
+                System.arraycopy(cells, 0, changed, changedCount, count);
+                changedCount += count;
+            }
+
+            @Override
+            public void boardReset() {
+                replaced = true;
+            }
+        });
+        this.snapshot = new Snapshot(0, game);
+    }
+
+    // ---------- Ghi (qua hàng đợi) ----------
+
+    /**
+     * Xếp 1 lệnh bất kỳ vào hàng đợi, chạy trên writer thread với quyền truy cập GameService.
+     * Gọi từ chính writer thread (trong 1 lệnh / observer) thì chạy luôn, không xếp hàng (tránh tự chờ mình).
+     */
+    public <T> CompletableFuture<T> submit(Function<? super GameService, T> command) {
+        if (Thread.currentThread() == writerThread) {
+            return CompletableFuture.completedFuture(executing ? command.apply(game) : execute(command));
+        }
+        return CompletableFuture.supplyAsync(() -> execute(command), writer);
+    }
+
+    public CompletableFuture<Snapshot> reveal(int r, int c) {
+        return run(g -> g.reveal(r, c));
+    }
+
+    public CompletableFuture<Snapshot> toggleFlag(int r, int c) {
+        return run(g -> g.toggleFlag(r, c));
+    }
+
+    public CompletableFuture<Snapshot> chord(int r, int c) {
+        return run(g -> g.chord(r, c));
+    }
+
+    /** Chạy lệnh rồi trả về snapshot mới nhất lúc lệnh xong (đã gồm kết quả của lệnh). */
+    private CompletableFuture<Snapshot> run(Consumer<? super GameService> command) {
+        return submit(g -> {
+            command.accept(g);
+            return null;
+        }).thenApply(ignored -> snapshot);
+    }
+
+    public CompletableFuture<Boolean> undo() {
+        return submit(GameService::undo);
+    }
+
+    public CompletableFuture<Boolean> redo() {
+        return submit(GameService::redo);
+    }
+
+    private <T> T execute(Function<? super GameService, T> command) {
+        GameState before = game.getState();
+        writeSeq++; // -> lẻ
+        // các lần ghi board bên dưới không được lộ ra trước khi writeSeq thành lẻ
+        VarHandle.storeStoreFence();
+        executing = true;
+        T result;
+        try {
+            result = command.apply(game);
+        } finally {
+            executing = false;
+            writeSeq++; // -> chẵn
+            publish(before);
+        }
+        return result;
+    }
+
+    /** Có gì đổi thì tăng version, publish snapshot mới rồi báo observer. */
+    private void publish(GameState before) {
+        boolean wasReplaced = replaced;
+        int count = changedCount;
+        replaced = false;
+        changedCount = 0;
+        if (!wasReplaced && count == 0 && game.getState() == before) return;
+
+        Snapshot s = new Snapshot(snapshot.version + 1, game);
+        snapshot = s;
+        for (Observer o : observers) {
+            if (wasReplaced) o.boardReplaced(s);
+            else o.sessionUpdated(s, changed, count);
+        }
+    }
+
+    // ---------- Đọc (không lock) ----------
+
+    /** Snapshot mới nhất đã publish. */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Đọc board mà không chặn writer: đọc khi writer không ghi, đọc xong kiểm tra lại version,
+     * bị chen ngang thì đọc lại. Hàm reader có thể chạy nhiều lần nên không được có side effect.
+     */
+    public <T> T read(Function<? super Board, T> reader) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            long seq = writeSeq;
+            if ((seq & 1) == 0) {
+                T result = reader.apply(snapshot.board);
+                // các lần đọc ô ở trên không được bị dời xuống sau lần đọc writeSeq bên dưới
+                VarHandle.acquireFence();
+                if (writeSeq == seq) return result;
+            }
+            Thread.onSpinWait();
+        }
+        return submit(g -> reader.apply(g.getBoard())).join();
+    }
+
+    // ---------- Observer ----------
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /** Các lệnh đã xếp hàng vẫn chạy hết, lệnh mới bị từ chối. */
+    @Override
+    public void close() {
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,378 @@
+package service;
+
+import model.Difficulty;
+import model.GameConfig;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Nhật ký nước đi của 1 ván, chỉ ghi thêm (append-only).
+ *
+ * Ván được xác định hoàn toàn bởi (config, boardSeed, firstClickOpensZero) + chuỗi sự kiện,
+ * nên Replayer dựng lại được đúng từng ô, kể cả vị trí mìn bị dời ở click đầu.
+ *
+ * Mỗi sự kiện: loại (REVEAL, FLAG, CHORD, UNDO, REDO, ...), ô (index = r * cols + c, -1 nếu không có), thời điểm (ms tính từ lúc bắt đầu ghi).
+ * Lượt AI gộp (GameService.applyMoves) được ghi thành chuỗi BATCH_FLAG / BATCH_REVEAL rồi BATCH_APPLY.
+ * "Nước đi" (move) là mọi sự kiện trừ BATCH_FLAG / BATCH_REVEAL.
+ *
+ * File: header (MAGIC "MSWR", VERSION, rows, cols, mines, difficulty, openZero, boardSeed, startMillis)
+ * rồi mỗi nước đi là 1 frame: int độ dài payload, payload, int CRC32 của payload.
+ * Payload là các sự kiện của nước đi đó: byte loại, varint (ô + 1), varint chênh lệch thời gian.
+ * (Bản 1 không có frame: các sự kiện nối thẳng đến hết file; vẫn đọc được.)
+ *
+ * streamTo(file): ghi header + các nước đã có, sau đó mỗi nước đi xong được ghi xuống file ngay
+ * => app bị kill / crash chỉ mất nước đang dở. Frame cuối bị ghi dở (thiếu byte / sai CRC) bị bỏ khi đọc.
+ * Các sự kiện vẫn được giữ trong bộ nhớ để Replayer truy cập ngẫu nhiên.
+ */
+public class ReplayLog implements AutoCloseable {
+
+    public static final int MAGIC = 0x4D535752; // "MSWR"
+    public static final short VERSION = 2;
+    private static final short VERSION_UNFRAMED = 1;
+
+    public static final byte REVEAL = 0;
+    public static final byte FLAG = 1;
+    public static final byte CHORD = 2;
+    public static final byte UNDO = 3;
+    public static final byte REDO = 4;
+    public static final byte BATCH_FLAG = 5;
+    public static final byte BATCH_REVEAL = 6;
+    public static final byte BATCH_APPLY = 7;
+
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 4 + 4 + 1 + 1 + 8 + 8;
+    // vị trí byte openZero trong header
+    private static final int OPEN_ZERO_OFFSET = 4 + 2 + 4 + 4 + 4 + 1;
+    // byte loại + 2 varint long
+    private static final int MAX_EVENT_BYTES = 1 + 10 + 10;
+
+    private final GameConfig config;
+    private final long boardSeed;
+    private boolean firstClickOpensZero;
+    private final long startMillis;
+    private final long startNanos;
+
+    private byte[] types = new byte[64];
+    private int[] cells = new int[64];
+    private long[] times = new long[64];
+    private int size;
+
+    // moveEnds[m] = số sự kiện tính đến hết nước đi m
+    private int[] moveEnds = new int[64];
+    private int moves;
+
+    // != null khi đang ghi thẳng xuống file (streamTo)
+    private FileChannel stream;
+    // thời điểm sự kiện cuối đã ghi xuống stream (để tính chênh lệch)
+    private long streamTime;
+    private ByteBuffer frame = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+
+    public ReplayLog(GameConfig config, long boardSeed, boolean firstClickOpensZero) {
+        this(config, boardSeed, firstClickOpensZero, System.currentTimeMillis());
+    }
+
+    private ReplayLog(GameConfig config, long boardSeed, boolean firstClickOpensZero, long startMillis) {
+        this.config = config;
+        this.boardSeed = boardSeed;
+        this.firstClickOpensZero = firstClickOpensZero;
+        this.startMillis = startMillis;
+        this.startNanos = System.nanoTime();
+    }
+
+    public GameConfig getConfig() { return config; }
+    public long getBoardSeed() { return boardSeed; }
+    public boolean isFirstClickOpensZero() { return firstClickOpensZero; }
+    public long getStartMillis() { return startMillis; }
+
+    /**
+     * Đổi chế độ first click trước click đầu tiên (GameService.setFirstClickOpensZero):
+     * header phải khớp với chế độ lúc click đầu thật sự xảy ra, vì Replayer dời mìn theo nó.
+     * Header đã stream xuống file cũng được ghi lại.
+     */
+    void setFirstClickOpensZero(boolean openZero) {
+        if (openZero == firstClickOpensZero) return;
+        firstClickOpensZero = openZero;
+        if (stream == null) return;
+        try {
+            stream.write(ByteBuffer.wrap(new byte[]{(byte) (openZero ? 1 : 0)}), OPEN_ZERO_OFFSET);
+        } catch (IOException e) {
+            System.err.println("Replay log stream failed, keeping the log in memory only: " + e.getMessage());
+            close();
+        }
+    }
+
+    public int size() { return size; }
+    public byte getType(int event) { return types[event]; }
+    public int getCell(int event) { return cells[event]; }
+    /** ms tính từ lúc bắt đầu ghi. */
+    public long getTime(int event) { return times[event]; }
+
+    public int moveCount() { return moves; }
+
+    /** Vị trí sự kiện đầu tiên của nước đi move. */
+    public int moveStart(int move) {
+        return move == 0 ? 0 : moveEnds[move - 1];
+    }
+
+    public int moveEnd(int move) {
+        return moveEnds[move];
+    }
+
+    /** Ghi thêm 1 sự kiện tại thời điểm hiện tại. */
+    public void append(byte type, int cell) {
+        append(type, cell, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private void append(byte type, int cell, long time) {
+        if (type < REVEAL || type > BATCH_APPLY) throw new IllegalArgumentException("Unknown event type " + type);
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            cells = Arrays.copyOf(cells, size * 2);
+            times = Arrays.copyOf(times, size * 2);
+        }
+        types[size] = type;
+        cells[size] = cell;
+        times[size] = time;
+        size++;
+
+        if (type != BATCH_FLAG && type != BATCH_REVEAL) {
+            if (moves == moveEnds.length) moveEnds = Arrays.copyOf(moveEnds, moves * 2);
+            moveEnds[moves++] = size;
+            if (stream != null) streamMove(moves - 1);
+        }
+    }
+
+    // ---------- Stream ----------
+
+    /**
+     * Ghi log xuống file ngay trong lúc chơi: header + các nước đã có, rồi mỗi nước đi mới được ghi
+     * khi nó hoàn tất. Ghi lỗi thì dừng stream (báo ra stderr), log trong bộ nhớ vẫn ghi tiếp.
+     */
+    public void streamTo(String file) throws IOException {
+        if (stream != null) throw new IllegalStateException("Replay log is already streaming");
+        FileChannel ch = FileChannel.open(Path.of(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeHeader(ch);
+            long time = 0;
+            for (int m = 0; m < moves; m++) time = writeMove(ch, m, time);
+            streamTime = time;
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        stream = ch;
+    }
+
+    public boolean isStreaming() {
+        return stream != null;
+    }
+
+    private void streamMove(int move) {
+        try {
+            streamTime = writeMove(stream, move, streamTime);
+        } catch (IOException e) {
+            System.err.println("Replay log stream failed, keeping the log in memory only: " + e.getMessage());
+            close();
+        }
+    }
+
+    /** Dừng stream và đóng file (log trong bộ nhớ không đổi). */
+    @Override
+    public void close() {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            System.err.println("Cannot close replay log stream: " + e.getMessage());
+        }
+        stream = null;
+    }
+
+    // ---------- File ----------
+
+    public void save(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeTo(ch);
+        }
+    }
+
+    public static ReplayLog load(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+            return readFrom(ch);
+        }
+    }
+
+    /** Ghi toàn bộ log (các sự kiện BATCH_* chưa có BATCH_APPLY đi kèm thì không ghi). */
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        writeHeader(ch);
+        long time = 0;
+        for (int m = 0; m < moves; m++) time = writeMove(ch, m, time);
+    }
+
+    private void writeHeader(WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES);
+        buf.putInt(MAGIC)
+                .putShort(VERSION)
+                .putInt(config.rows)
+                .putInt(config.cols)
+                .putInt(config.mines)
+                .put((byte) (config.isCustom() ? -1 : config.getDifficulty().ordinal()))
+                .put((byte) (firstClickOpensZero ? 1 : 0))
+                .putLong(boardSeed)
+                .putLong(startMillis);
+        flush(buf, ch);
+    }
+
+    /**
+     * Ghi 1 frame chứa các sự kiện của nước đi move.
+     * @param prevTime thời điểm sự kiện ngay trước nước đi này
+     * @return thời điểm sự kiện cuối của nước đi
+     */
+    private long writeMove(WritableByteChannel ch, int move, long prevTime) throws IOException {
+        int from = moveStart(move), to = moveEnd(move);
+        int need = 4 + (to - from) * MAX_EVENT_BYTES + 4;
+        if (frame.capacity() < need) frame = ByteBuffer.allocate(Math.max(need, frame.capacity() * 2));
+
+        frame.clear().position(4);
+        for (int e = from; e < to; e++) {
+            frame.put(types[e]);
+            putVarLong(frame, cells[e] + 1L);
+            putVarLong(frame, times[e] - prevTime);
+            prevTime = times[e];
+        }
+        int length = frame.position() - 4;
+        crc.reset();
+        crc.update(frame.array(), 4, length);
+        frame.putInt(0, length).putInt((int) crc.getValue());
+        flush(frame, ch);
+        return prevTime;
+    }
+
+    public static ReplayLog readFrom(ReadableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        buf.limit(HEADER_BYTES);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) throw new EOFException("Replay log is truncated");
+        }
+        buf.flip();
+
+        if (buf.getInt() != MAGIC) throw new IOException("Not a Minesweeper replay log");
+        short version = buf.getShort();
+        if (version != VERSION && version != VERSION_UNFRAMED) throw new IOException("Unsupported replay version " + version);
+        int rows = buf.getInt(), cols = buf.getInt(), mines = buf.getInt();
+        int difficulty = buf.get();
+        boolean openZero = buf.get() != 0;
+        long seed = buf.getLong();
+        long startMillis = buf.getLong();
+
+        GameConfig config;
+        try {
+            config = difficulty < 0 ? GameConfig.custom(rows, cols, mines) : GameConfig.of(Difficulty.values()[difficulty]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt replay log: config", e);
+        }
+        ReplayLog log = new ReplayLog(config, seed, openZero, startMillis);
+        if (version == VERSION) {
+            readFrames(log, ch);
+            return log;
+        }
+
+        buf.clear().limit(0);
+        long time = 0;
+        while (true) {
+            if (buf.remaining() < 1 + 10 + 10) {
+                buf.compact();
+                while (buf.hasRemaining() && ch.read(buf) > 0) {
+                    // đọc cho đầy buffer hoặc đến hết file
+                }
+                buf.flip();
+                if (!buf.hasRemaining()) break;
+            }
+            byte type = buf.get();
+            long cell = getVarLong(buf) - 1;
+            time += getVarLong(buf);
+            if (type < REVEAL || type > BATCH_APPLY || cell < -1 || cell >= config.cells()) {
+                throw new IOException("Corrupt replay log: event " + log.size);
+            }
+            log.append(type, (int) cell, time);
+        }
+        return log;
+    }
+
+    /** Đọc các frame đến hết file; frame cuối ghi dở (thiếu byte, sai CRC) bị bỏ qua. */
+    private static void readFrames(ReplayLog log, ReadableByteChannel ch) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        long time = 0;
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+                // payload rỗng / dài bất thường: chỉ có thể là đuôi file bị ghi dở
+                if (length <= 0 || length > (1 << 30)) return;
+                if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if (in.readInt() != (int) crc.getValue()) return;
+            } catch (EOFException e) {
+                return;
+            }
+
+            // frame đúng CRC mà nội dung sai => file hỏng thật, không phải đuôi ghi dở
+            ByteBuffer buf = ByteBuffer.wrap(payload, 0, length);
+            int moves = log.moves;
+            while (buf.hasRemaining()) {
+                byte type = buf.get();
+                long cell = getVarLong(buf) - 1;
+                time += getVarLong(buf);
+                if (type < REVEAL || type > BATCH_APPLY || cell < -1 || cell >= log.config.cells()) {
+                    throw new IOException("Corrupt replay log: event " + log.size);
+                }
+                if (log.moves != moves) throw new IOException("Corrupt replay log: frame holds more than 1 move");
+                log.append(type, (int) cell, time);
+            }
+            if (log.moves != moves + 1) throw new IOException("Corrupt replay log: frame without a move");
+        }
+    }
+
+    private static void flush(ByteBuffer buf, WritableByteChannel ch) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    private static void putVarLong(ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private static long getVarLong(ByteBuffer buf) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buf.hasRemaining()) throw new EOFException("Replay log is truncated");
+            byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Corrupt replay log: varint");
+    }
+}
@@ -0,0 +1,160 @@
+package service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dựng lại 1 ván từ ReplayLog, chạy hết tốc độ (không GUI, không chờ theo timestamp).
+ *
+ * seek(move) tới bất kỳ nước đi nào: cứ mỗi checkpointInterval nước đi, trạng thái đầy đủ của ván
+ * (board + lịch sử undo/redo, định dạng session của SaveLoadService) được chụp lại lần đầu đi qua.
+ * Tua tới / tua lui chỉ cần khôi phục checkpoint gần nhất rồi chạy tiếp tối đa checkpointInterval nước.
+ */
+public class Replayer {
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 256;
+
+    private final ReplayLog log;
+    private final int checkpointInterval;
+    // checkpoints.get(k) = trạng thái sau k * checkpointInterval nước đi (null nếu chưa có / không chụp được)
+    private final List<byte[]> checkpoints = new ArrayList<>();
+
+    private GameService game;
+    private int position;
+
+    // các ô BATCH_FLAG / BATCH_REVEAL đang chờ BATCH_APPLY
+    private int[] batchFlags = new int[16];
+    private int batchFlagCount;
+    private int[] batchReveals = new int[16];
+    private int batchRevealCount;
+
+    public Replayer(ReplayLog log) {
+        this(log, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public Replayer(ReplayLog log, int checkpointInterval) {
+        if (checkpointInterval <= 0) throw new IllegalArgumentException("checkpointInterval must be > 0");
+        this.log = log;
+        this.checkpointInterval = checkpointInterval;
+        restart();
+    }
+
+    /** Ván đang được dựng lại (đổi sang object khác sau khi seek về checkpoint). */
+    public GameService getGame() { return game; }
+
+    /** Số nước đi đã áp dụng. */
+    public int getPosition() { return position; }
+
+    public int moveCount() { return log.moveCount(); }
+
+    /** Áp dụng nước đi kế tiếp. @return false nếu đã hết log */
+    public boolean step() {
+        if (position >= log.moveCount()) return false;
+
+        for (int e = log.moveStart(position); e < log.moveEnd(position); e++) {
+            apply(log.getType(e), log.getCell(e));
+        }
+        position++;
+
+        if (position % checkpointInterval == 0) saveCheckpoint();
+        return true;
+    }
+
+    public void playToEnd() {
+        while (step()) {
+            // chạy hết
+        }
+    }
+
+    /** Đưa ván về đúng trạng thái sau move nước đi đầu tiên. */
+    public void seek(int move) {
+        if (move < 0 || move > log.moveCount()) {
+            throw new IndexOutOfBoundsException("move " + move + " / " + log.moveCount());
+        }
+        // checkpoint gần nhất không vượt quá move
+        int k = Math.min(move / checkpointInterval, checkpoints.size() - 1);
+        while (k > 0 && checkpoints.get(k) == null) k--;
+
+        // phải lùi, hoặc checkpoint ở gần move hơn vị trí hiện tại => nhảy tới checkpoint
+        if (move < position || k * checkpointInterval > position) {
+            if (k > 0) restoreCheckpoint(k);
+            else restart();
+        }
+        while (position < move) step();
+    }
+
+    private void apply(byte type, int cell) {
+        int r = cell >= 0 ? game.getBoard().row(cell) : 0;
+        int c = cell >= 0 ? game.getBoard().col(cell) : 0;
+        switch (type) {
+            case ReplayLog.REVEAL:
+                game.reveal(r, c);
+                break;
+            case ReplayLog.FLAG:
+                game.toggleFlag(r, c);
+                break;
+            case ReplayLog.CHORD:
+                game.chord(r, c);
+                break;
+            case ReplayLog.UNDO:
+                game.undo();
+                break;
+            case ReplayLog.REDO:
+                game.redo();
+                break;
+            case ReplayLog.BATCH_FLAG:
+                if (batchFlagCount == batchFlags.length) batchFlags = Arrays.copyOf(batchFlags, batchFlagCount * 2);
+                batchFlags[batchFlagCount++] = cell;
+                break;
+            case ReplayLog.BATCH_REVEAL:
+                if (batchRevealCount == batchReveals.length) batchReveals = Arrays.copyOf(batchReveals, batchRevealCount * 2);
+                batchReveals[batchRevealCount++] = cell;
+                break;
+            case ReplayLog.BATCH_APPLY:
+                game.applyMoves(batchFlags, batchFlagCount, batchReveals, batchRevealCount);
+                batchFlagCount = 0;
+                batchRevealCount = 0;
+                break;
+            default:
+                throw new IllegalStateException("Unsupported event type " + type);
+        }
+    }
+
+    // ---------- Checkpoint ----------
+
+    private void restart() {
+        game = GameService.fromBoardSeed(log.getConfig(), log.getBoardSeed());
+        game.setFirstClickOpensZero(log.isFirstClickOpensZero());
+        position = 0;
+        if (checkpoints.isEmpty()) checkpoints.add(null); // mốc 0 = restart()
+    }
+
+    private void saveCheckpoint() {
+        int k = position / checkpointInterval;
+        while (checkpoints.size() <= k) checkpoints.add(null);
+        if (checkpoints.get(k) != null) return;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            SaveLoadService.writeSession(game, Channels.newChannel(bytes));
+            checkpoints.set(k, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void restoreCheckpoint(int k) {
+        try {
+            game = SaveLoadService.readSession(Channels.newChannel(new ByteArrayInputStream(checkpoints.get(k))));
+            position = k * checkpointInterval;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,26 +1,621 @@
 package service;
 
 import model.Board;
+import model.Difficulty;
+import model.GameConfig;
+import model.GameState;
+import model.MappedBoard;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Lưu / đọc ván chơi theo định dạng nhị phân gọn (không dùng Java serialization).
+ *
+ *  header (28 byte, big-endian):
+ *    int   MAGIC "MSWP"
+ *    short VERSION
+ *    byte  GameState.ordinal()
+ *    byte  (dự phòng, = 0)
+ *    int   rows, int cols, int mines
+ *    long  seed sinh board (0 nếu không rõ)
+ *  sau đó 3 "mặt phẳng" bit, mỗi mặt ceil(rows * cols / 64) long, bit i = ô index i:
+ *    mìn, đã mở, cắm cờ
+ *
+ * => 3 bit / ô. Số mìn xung quanh không lưu mà tính lại khi đọc.
+ * Ghi/đọc qua NIO channel với 1 buffer cố định, nên có thể ghi thẳng vào file, socket, ...
+ *
+ * Định dạng "mapped" (saveMapped / openMapped) cho board rất lớn:
+ *  header MAPPED_HEADER_BYTES byte: như trên nhưng MAGIC "MSWM", MAPPED_VERSION, byte dự phòng là cờ
+ *  (MAPPED_COUNTERS = có bộ đếm), rồi int số ô an toàn đã mở, int số cờ, 12 byte đệm;
+ *  sau đó đúng rows * cols byte, mỗi ô 1 byte theo layout của Board.
+ * File được map thẳng thành MappedBoard => mở gần như tức thì, ô chỉ được đọc khi chạm tới
+ * và thay đổi được ghi lại ngay trong file. Bộ đếm trong header giúp GameService.loadBoard khỏi quét
+ * cả file; openMapped xoá cờ MAPPED_COUNTERS (ô sắp bị sửa thẳng trong file), saveMapped ghi lại.
+ * (Bản 1: header 32 byte, không có bộ đếm => load phải quét.)
+ *
+ * Định dạng "session" (saveSession / loadSession) lưu cả GameService:
+ *  header: MAGIC "MSWS", VERSION, state, cờ (firstClick, firstClickOpensZero),
+ *          rows, cols, mines, difficulty (-1 = custom), seed
+ *  3 mặt phẳng bit như trên, rồi lịch sử undo và redo (cũ nhất trước).
+ *  Mỗi action: type, prevState, newState, số "đoạn", rồi từng đoạn =
+ *    1 byte trạng thái trước/sau của ô (bit GameAction.PREV_* / NEW_*),
+ *    varint (zigzag) khoảng cách từ cuối đoạn trước, varint (độ dài - 1).
+ *  Ô trong 1 action được sắp theo index trước khi ghi, nên vùng flood fill / loạt nước đi của AI
+ *  tốn vài byte mỗi đoạn liên tiếp, không phải mỗi ô.
+ */
 public class SaveLoadService {
 
-    public static void save(Board board, String file) throws Exception {
-        FileOutputStream fos = new FileOutputStream(file);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(board);
-        oos.close();
+    public static final int MAGIC = 0x4D535750; // "MSWP"
+    public static final int MAPPED_MAGIC = 0x4D53574D; // "MSWM"
+    public static final int SESSION_MAGIC = 0x4D535753; // "MSWS"
+    public static final short VERSION = 1;
+    public static final short MAPPED_VERSION = 2;
+
+    private static final int HEADER_BYTES = 28;
+    private static final int MAPPED_V1_HEADER_BYTES = 32;
+    private static final int MAPPED_HEADER_BYTES = 48;
+    private static final int MAPPED_COUNTERS = 1;
+    private static final int SESSION_HEADER_BYTES = 29;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final int PLANE_MINE = 0;
+    private static final int PLANE_REVEALED = 1;
+    private static final int PLANE_FLAGGED = 2;
+
+    /** Ván đọc được từ file: board + thông tin trong header. */
+    public static final class SavedGame {
+        public final Board board;
+        public final GameState state;
+        public final int mines;
+        public final long seed;
+        // bộ đếm lưu trong header (file mapped), -1 nếu không có
+        public final int revealedSafe;
+        public final int flagCount;
+
+        SavedGame(Board board, GameState state, int mines, long seed) {
+            this(board, state, mines, seed, -1, -1);
+        }
+
+        SavedGame(Board board, GameState state, int mines, long seed, int revealedSafe, int flagCount) {
+            this.board = board;
+            this.state = state;
+            this.mines = mines;
+            this.seed = seed;
+            this.revealedSafe = revealedSafe;
+            this.flagCount = flagCount;
+        }
+
+        public boolean hasCounters() {
+            return revealedSafe >= 0 && flagCount >= 0;
+        }
+    }
+
+    // ---------- API theo file ----------
+
+    public static void save(Board board, String file) throws IOException {
+        int mines = countMines(board);
+        try (FileChannel ch = openForWrite(file)) {
+            write(board, stateOf(board, mines), mines, 0L, ch);
+        }
+    }
+
+    /** Lưu board của service kèm trạng thái ván và seed. */
+    public static void save(GameService service, String file) throws IOException {
+        try (FileChannel ch = openForWrite(file)) {
+            write(service.getBoard(), service.getState(), service.getTotalMines(), service.getBoardSeed(), ch);
+        }
+    }
+
+    public static Board load(String file) throws IOException {
+        return loadGame(file).board;
+    }
+
+    public static SavedGame loadGame(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+            return read(ch);
+        }
+    }
+
+    // ---------- File map cho board rất lớn ----------
+
+    public static void saveMapped(Board board, String file) throws IOException {
+        int mines = countMines(board);
+        saveMapped(board, stateOf(board, mines), mines, 0L, board.countRevealedSafe(), board.countFlagged(), file);
+    }
+
+    public static void saveMapped(GameService service, String file) throws IOException {
+        saveMapped(service.getBoard(), service.getState(), service.getTotalMines(), service.getBoardSeed(),
+                service.getRevealedCount(), service.getFlagCount(), file);
+    }
+
+    private static void saveMapped(Board board, GameState state, int mines, long seed,
+                                   int revealedSafe, int flagCount, String file) throws IOException {
+        Path target = Path.of(file);
+        ByteBuffer header = ByteBuffer.allocate(MAPPED_HEADER_BYTES);
+        putHeader(header, MAPPED_MAGIC, MAPPED_VERSION, MAPPED_COUNTERS, board, state, mines, seed);
+        header.putInt(revealedSafe).putInt(flagCount).putInt(0).putLong(0L);
+
+        if (board instanceof MappedBoard && isBackedBy((MappedBoard) board, target)) {
+            // board đang map chính file này: ô đã nằm sẵn trong file (mở lại + truncate sẽ xoá mất chúng),
+            // chỉ cần đẩy ô xuống đĩa rồi ghi lại header (state / seed / bộ đếm đã đổi trong lúc chơi)
+            ((MappedBoard) board).force();
+            try (FileChannel ch = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                flush(header, ch);
+                ch.force(false);
+            }
+            return;
+        }
+
+        // ghi ra file tạm rồi rename đè lên target: board nguồn có thể đang map bản cũ của target,
+        // và lỗi giữa chừng không làm hỏng file cũ
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            flush(header, ch);
+            MappedBoard mapped = new MappedBoard(board.getRows(), board.getCols(), ch, MAPPED_HEADER_BYTES, true);
+            mapped.copyFrom(board);
+            mapped.force();
+        }
+        replace(tmp, target);
+    }
+
+    /** board map đúng file target với layout hiện tại (ghi đè header tại chỗ được). */
+    private static boolean isBackedBy(MappedBoard board, Path target) throws IOException {
+        return board.getFile() != null && board.getOffset() == MAPPED_HEADER_BYTES
+                && Files.exists(target) && Files.isSameFile(board.getFile(), target);
+    }
+
+    private static void replace(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Mở file mapped: chỉ đọc header và map phần ô, không đọc cả grid lên heap.
+     * Board trả về ghi thay đổi thẳng vào file. Bộ đếm trong header (nếu có) được trả kèm,
+     * rồi bị đánh dấu hết hạn trong file cho tới lần saveMapped sau.
+     */
+    public static SavedGame openMapped(String file) throws IOException {
+        Path path = Path.of(file);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(MAPPED_HEADER_BYTES);
+            buf.limit(HEADER_BYTES);
+            fill(buf, ch);
+            buf.flip();
+            Header h = readHeader(buf, MAPPED_MAGIC, MAPPED_VERSION);
+            long cells = (long) h.rows * h.cols;
+            long offset = h.version == 1 ? MAPPED_V1_HEADER_BYTES : MAPPED_HEADER_BYTES;
+            if (ch.size() < offset + cells) {
+                throw new IOException("Save file is truncated");
+            }
+
+            int revealedSafe = -1, flagCount = -1;
+            if (h.version >= 2 && (h.flags & MAPPED_COUNTERS) != 0) {
+                buf.clear().limit(2 * Integer.BYTES);
+                fill(buf, ch);
+                buf.flip();
+                int r = buf.getInt(), f = buf.getInt();
+                if (r >= 0 && r <= cells - h.mines && f >= 0 && f <= cells) {
+                    revealedSafe = r;
+                    flagCount = f;
+                }
+                // từ giờ ô bị sửa thẳng trong file => bộ đếm hết đúng nếu app dừng mà không saveMapped
+                ch.write(ByteBuffer.wrap(new byte[]{(byte) (h.flags & ~MAPPED_COUNTERS)}), 7);
+            }
+            MappedBoard board = new MappedBoard(h.rows, h.cols, ch, offset, true, path);
+            return new SavedGame(board, h.state, h.mines, h.seed, revealedSafe, flagCount);
+        }
+    }
+
+    // ---------- Session: GameService + lịch sử undo/redo ----------
+
+    public static void saveSession(GameService service, String file) throws IOException {
+        try (FileChannel ch = openForWrite(file)) {
+            writeSession(service, ch);
+        }
+    }
+
+    public static GameService loadSession(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+            return readSession(ch);
+        }
+    }
+
+    public static void writeSession(GameService service, WritableByteChannel ch) throws IOException {
+        GameConfig config = service.getConfig();
+        Board board = service.getBoard();
+        Out out = new Out(ch);
+
+        out.buf.putInt(SESSION_MAGIC)
+                .putShort(VERSION)
+                .put((byte) service.getState().ordinal())
+                .put((byte) ((service.isFirstClick() ? 1 : 0) | (service.isFirstClickOpensZero() ? 2 : 0)))
+                .putInt(config.rows)
+                .putInt(config.cols)
+                .putInt(config.mines)
+                .put((byte) (config.isCustom() ? -1 : config.getDifficulty().ordinal()))
+                .putLong(service.getBoardSeed());
+
+        for (int plane = PLANE_MINE; plane <= PLANE_FLAGGED; plane++) {
+            writePlane(board, plane, out.buf, ch);
+        }
+        writeHistory(out, board, service.undoHistory());
+        writeHistory(out, board, service.redoHistory());
+        flush(out.buf, ch);
+    }
+
+    public static GameService readSession(ReadableByteChannel ch) throws IOException {
+        In in = new In(ch);
+        in.require(SESSION_HEADER_BYTES);
+        ByteBuffer buf = in.buf;
+
+        if (buf.getInt() != SESSION_MAGIC) throw new IOException("Not a Minesweeper session file");
+        short version = buf.getShort();
+        if (version != VERSION) throw new IOException("Unsupported save version " + version);
+        GameState state = stateAt(buf.get());
+        int flags = buf.get();
+        int rows = buf.getInt(), cols = buf.getInt(), mines = buf.getInt();
+        int difficulty = buf.get();
+        long seed = buf.getLong();
+
+        GameConfig config;
+        try {
+            config = difficulty < 0 ? GameConfig.custom(rows, cols, mines) : GameConfig.of(Difficulty.values()[difficulty]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt save: config", e);
+        }
+        if (config.rows != rows || config.cols != cols || config.mines != mines) {
+            throw new IOException("Corrupt save: config does not match " + config.getDifficulty());
+        }
+
+        Board board = new Board(rows, cols);
+        int minesRead = 0;
+        for (int plane = PLANE_MINE; plane <= PLANE_FLAGGED; plane++) {
+            int set = readPlane(board, plane, buf, ch);
+            if (plane == PLANE_MINE) minesRead = set;
+        }
+        if (minesRead != mines) throw new IOException("Corrupt save: expected " + mines + " mines, found " + minesRead);
+
+        List<GameService.GameAction> undo = readHistory(in, board);
+        List<GameService.GameAction> redo = readHistory(in, board);
+
+        return GameService.fromSession(config, board, state, (flags & 1) != 0, (flags & 2) != 0, seed, undo, redo);
+    }
+
+    private static void writeHistory(Out out, Board board, Iterable<GameService.GameAction> actions) throws IOException {
+        int count = 0;
+        for (GameService.GameAction ignored : actions) count++;
+        out.varint(count);
+
+        for (GameService.GameAction action : actions) {
+            out.ensure(3);
+            out.buf.put((byte) action.type.ordinal())
+                    .put((byte) action.prevState.ordinal())
+                    .put((byte) action.newState.ordinal());
+
+            // mỗi ô xuất hiện tối đa 1 lần trong 1 action và undo/redo từng ô độc lập với nhau
+            // => sắp theo index để các ô kề nhau gộp thành đoạn dài
+            long[] keys = new long[action.size];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = ((long) action.cells[k] << 4) | action.bits[k];
+            }
+            Arrays.sort(keys);
+
+            int runs = 0;
+            for (int k = 0; k < keys.length; k++) {
+                if (k == 0 || !continues(keys[k - 1], keys[k])) runs++;
+            }
+            out.varint(runs);
+
+            int expected = 0;
+            for (int k = 0; k < keys.length; ) {
+                int length = 1;
+                while (k + length < keys.length && continues(keys[k + length - 1], keys[k + length])) length++;
+                int start = (int) (keys[k] >>> 4);
+                out.ensure(1);
+                out.buf.put((byte) (keys[k] & 0xF));
+                out.varint(zigzag(start - expected));
+                out.varint(length - 1);
+                expected = start + length;
+                k += length;
+            }
+        }
+    }
+
+    private static List<GameService.GameAction> readHistory(In in, Board board) throws IOException {
+        int count = in.varint();
+        GameService.ActionType[] types = GameService.ActionType.values();
+        List<GameService.GameAction> actions = new ArrayList<>(Math.min(count, 1 << 16));
+
+        for (int a = 0; a < count; a++) {
+            in.require(3);
+            int type = in.buf.get();
+            if (type < 0 || type >= types.length) throw new IOException("Corrupt save: action type");
+            GameService.GameAction action = new GameService.GameAction(types[type]);
+            action.prevState = stateAt(in.buf.get());
+            action.newState = stateAt(in.buf.get());
+
+            int runs = in.varint();
+            int expected = 0;
+            for (int r = 0; r < runs; r++) {
+                in.require(1);
+                int bits = in.buf.get();
+                long start = (long) expected + unzigzag(in.varint());
+                long length = (in.varint() & 0xFFFFFFFFL) + 1;
+                if (start < 0 || start + length > board.size()) throw new IOException("Corrupt save: cell index");
+
+                for (int i = (int) start; i < start + length; i++) {
+                    action.add(i, bits & 0xF);
+                }
+                expected = (int) (start + length);
+            }
+            actions.add(action);
+        }
+        return actions;
+    }
+
+    /** Ô sau nằm ngay cạnh ô trước và có cùng kiểu thay đổi => cùng 1 đoạn. */
+    private static boolean continues(long prevKey, long key) {
+        return (key >>> 4) == (prevKey >>> 4) + 1 && (key & 0xF) == (prevKey & 0xF);
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static GameState stateAt(int ordinal) throws IOException {
+        GameState[] states = GameState.values();
+        if (ordinal < 0 || ordinal >= states.length) throw new IOException("Corrupt save: state");
+        return states[ordinal];
+    }
+
+    /** Ghi tuần tự qua 1 buffer cố định, đầy thì đẩy xuống channel. */
+    private static final class Out {
+        final ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        final WritableByteChannel ch;
+
+        Out(WritableByteChannel ch) {
+            this.ch = ch;
+        }
+
+        void ensure(int n) throws IOException {
+            if (buf.remaining() < n) flush(buf, ch);
+        }
+
+        void varint(int v) throws IOException {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+    }
+
+    /** Đọc tuần tự, buffer luôn ở chế độ đọc; require(n) nạp thêm cho đủ n byte. */
+    private static final class In {
+        final ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        final ReadableByteChannel ch;
+
+        In(ReadableByteChannel ch) {
+            this.ch = ch;
+            buf.limit(0);
+        }
+
+        void require(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            buf.compact();
+            fill(buf, ch, n);
+            buf.flip();
+        }
+
+        int varint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                require(1);
+                int b = buf.get();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("Corrupt save: varint");
+        }
+    }
+
+    // ---------- API theo channel ----------
+
+    public static void write(Board board, GameState state, int mines, long seed,
+                             WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        putHeader(buf, MAGIC, VERSION, 0, board, state, mines, seed);
+
+        for (int plane = PLANE_MINE; plane <= PLANE_FLAGGED; plane++) {
+            writePlane(board, plane, buf, ch);
+        }
+        flush(buf, ch);
+    }
+
+    public static SavedGame read(ReadableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        buf.limit(HEADER_BYTES);
+        fill(buf, ch);
+        buf.flip();
+        Header h = readHeader(buf, MAGIC, VERSION);
+
+        Board board = new Board(h.rows, h.cols);
+        buf.clear().limit(0);
+        int minesRead = 0;
+        for (int plane = PLANE_MINE; plane <= PLANE_FLAGGED; plane++) {
+            int set = readPlane(board, plane, buf, ch);
+            if (plane == PLANE_MINE) minesRead = set;
+        }
+        if (minesRead != h.mines) {
+            throw new IOException("Corrupt save: expected " + h.mines + " mines, found " + minesRead);
+        }
+        return new SavedGame(board, h.state, h.mines, h.seed);
+    }
+
+    // ---------- Header ----------
+
+    private static final class Header {
+        short version;
+        int flags;
+        GameState state;
+        int rows, cols, mines;
+        long seed;
+    }
+
+    private static void putHeader(ByteBuffer buf, int magic, short version, int flags,
+                                  Board board, GameState state, int mines, long seed) {
+        buf.putInt(magic)
+                .putShort(version)
+                .put((byte) state.ordinal())
+                .put((byte) flags)
+                .putInt(board.getRows())
+                .putInt(board.getCols())
+                .putInt(mines)
+                .putLong(seed);
+    }
+
+    /** Đọc header chung; chấp nhận version 1..maxVersion. */
+    private static Header readHeader(ByteBuffer buf, int magic, short maxVersion) throws IOException {
+        if (buf.getInt() != magic) throw new IOException("Not a Minesweeper save file");
+        short version = buf.getShort();
+        if (version < 1 || version > maxVersion) throw new IOException("Unsupported save version " + version);
+        int stateOrdinal = buf.get();
+
+        Header h = new Header();
+        h.version = version;
+        h.flags = buf.get() & 0xFF;
+        h.rows = buf.getInt();
+        h.cols = buf.getInt();
+        h.mines = buf.getInt();
+        h.seed = buf.getLong();
+
+        GameState[] states = GameState.values();
+        if (stateOrdinal < 0 || stateOrdinal >= states.length) throw new IOException("Corrupt save: state");
+        if (h.rows <= 0 || h.cols <= 0 || (long) h.rows * h.cols > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt save: size " + h.rows + "x" + h.cols);
+        }
+        if (h.mines < 0 || h.mines >= (long) h.rows * h.cols) throw new IOException("Corrupt save: mines " + h.mines);
+        h.state = states[stateOrdinal];
+        return h;
+    }
+
+    // ---------- Mặt phẳng bit ----------
+
+    private static void writePlane(Board board, int plane, ByteBuffer buf, WritableByteChannel ch) throws IOException {
+        int size = board.size();
+        for (int start = 0; start < size; start += 64) {
+            long bits = 0;
+            // chunk chưa load thì chưa có ô nào mở / cắm cờ (1 word không bao giờ vắt qua 2 chunk)
+            if (plane == PLANE_MINE || board.isLoaded(start)) {
+                int end = Math.min(start + 64, size);
+                for (int i = start; i < end; i++) {
+                    if (test(board, plane, i)) bits |= 1L << (i - start);
+                }
+            }
+            if (buf.remaining() < Long.BYTES) flush(buf, ch);
+            buf.putLong(bits);
+        }
+    }
+
+    /** @return số bit bật trong mặt phẳng */
+    private static int readPlane(Board board, int plane, ByteBuffer buf, ReadableByteChannel ch) throws IOException {
+        int size = board.size();
+        int count = 0;
+        for (int start = 0; start < size; start += 64) {
+            if (buf.remaining() < Long.BYTES) {
+                buf.compact();
+                fill(buf, ch, Long.BYTES);
+                buf.flip();
+            }
+            long bits = buf.getLong();
+            if (size - start < 64 && (bits >>> (size - start)) != 0) {
+                throw new IOException("Corrupt save: bits past the last cell");
+            }
+            for (; bits != 0; bits &= bits - 1) {
+                int i = start + Long.numberOfTrailingZeros(bits);
+                switch (plane) {
+                    case PLANE_MINE:
+                        board.setMine(i, true);
+                        BoardGenerator.addAdjacent(board, i, 1);
+                        break;
+                    case PLANE_REVEALED:
+                        board.setRevealed(i, true);
+                        break;
+                    default:
+                        board.setFlagged(i, true);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean test(Board board, int plane, int i) {
+        switch (plane) {
+            case PLANE_MINE: return board.isMine(i);
+            case PLANE_REVEALED: return board.isRevealed(i);
+            default: return board.isFlagged(i);
+        }
+    }
+
+    // ---------- IO helper ----------
+
+    private static FileChannel openForWrite(String file) throws IOException {
+        return FileChannel.open(Path.of(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void flush(ByteBuffer buf, WritableByteChannel ch) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    /** Đọc đến khi buffer đầy (tới limit). */
+    private static void fill(ByteBuffer buf, ReadableByteChannel ch) throws IOException {
+        fill(buf, ch, buf.limit());
+    }
+
+    /** Đọc đến khi buffer có ít nhất target byte (nhiều hơn nếu channel có sẵn và buffer còn chỗ). */
+    private static void fill(ByteBuffer buf, ReadableByteChannel ch, int target) throws IOException {
+        while (buf.position() < target) {
+            if (ch.read(buf) < 0) throw new EOFException("Save file is truncated");
+        }
+    }
+
+    private static int countMines(Board board) {
+        int count = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.isMine(i)) count++;
+        }
+        return count;
     }
 
-    public static Board load(String file) throws Exception {
-        FileInputStream fis = new FileInputStream(file);
-        ObjectInputStream ois = new ObjectInputStream(fis);
-        Board b = (Board) ois.readObject();
-        ois.close();
-        return b;
+    private static GameState stateOf(Board board, int mines) {
+        if (board.countRevealedMines() > 0) return GameState.LOST;
+        if (board.countRevealedSafe() == board.size() - mines) return GameState.WON;
+        return GameState.PLAYING;
     }
 }
@@ -1,48 +1,166 @@
 package service;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 import model.Difficulty;
+import model.GameConfig;
+import model.GameState;
 
 /**
- * Lưu best time theo từng độ khó.
- * Có khả năng:
- *  - Quản lý top 10 (PriorityQueue + EnumMap)
- *  - Lưu ra file + đọc vào (Serializable)
+ * Lịch sử mọi ván đã chơi + bảng best time theo từng độ khó.
+ *
+ * Lưu trên đĩa gồm 2 file:
+ *  - path        : snapshot (đã compact) = header + index + toàn bộ record cũ
+ *  - path + .log : nhật ký append-only các record từ sau snapshot
+ * Mỗi record dài cố định RECORD_BYTES và có CRC32 riêng => ghi dở lúc crash thì chỉ mất record cuối,
+ * lúc load cắt bỏ phần đuôi hỏng.
+ *
+ * Index (top 10 mỗi độ khó + số ván chơi / thắng) nằm ngay trong header snapshot => khởi động chỉ đọc header
+ * và phần log ngắn, không phải quét cả lịch sử. Bảng best time chỉ là view dẫn xuất từ các record.
+ *
+ * Snapshot mới được ghi ra file tạm, force xuống đĩa rồi rename atomic đè lên => không bao giờ mất file cũ
+ * nếu ghi dở. Snapshot mang "generation"; log chỉ được replay nếu cùng generation (log cũ hơn đã nằm trong snapshot).
+ *
+ * File best_times.dat kiểu cũ (Java serialization) không đọc được: bản cũ không bao giờ ghi thành công
+ * (comparator lambda của PriorityQueue không Serializable) nên file đó chỉ là stream dở, sẽ bị coi là file hỏng.
  */
-public class StatisticsService implements Serializable {
+public class StatisticsService {
 
-    private static final long serialVersionUID = 1L;
     private static final int MAX_RECORDS = 10;
 
-    // Mỗi độ khó có 1 priority queue: lưu 10 thời gian nhỏ nhất (ms)
+    public static final int SNAPSHOT_MAGIC = 0x4D535354; // "MSST"
+    public static final int LOG_MAGIC = 0x4D53534C;      // "MSSL"
+    public static final short VERSION = 1;
+
+    // magic + version + generation + số record + độ dài index
+    private static final int SNAPSHOT_HEADER_BYTES = 4 + 2 + 8 + 8 + 4;
+    // magic + version + generation
+    private static final int LOG_HEADER_BYTES = 4 + 2 + 8;
+    // time(8) rows(4) cols(4) mines(4) difficulty(1) outcome(1) flags(1) duration(8) clicks(4) crc(4)
+    static final int RECORD_BYTES = 39;
+    private static final int FLAG_ASSISTED = 1;
+
+    // log dài quá số record này thì gộp vào snapshot
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    /** 1 ván đã chơi xong. */
+    public static final class GameRecord {
+        public final long timestamp;       // epoch millis lúc kết thúc (0 = không rõ, vd. record chuyển từ file cũ)
+        public final int rows;
+        public final int cols;
+        public final int mines;
+        public final Difficulty difficulty; // null nếu board custom
+        public final GameState outcome;    // WON / LOST
+        public final long durationMillis;
+        public final int clicks;           // -1 = không rõ
+        public final boolean assisted;     // có dùng AI trong ván
+
+        public GameRecord(long timestamp, GameConfig config, GameState outcome,
+                          long durationMillis, int clicks, boolean assisted) {
+            this(timestamp, config.rows, config.cols, config.mines, config.getDifficulty(),
+                    outcome, durationMillis, clicks, assisted);
+        }
+
+        GameRecord(long timestamp, int rows, int cols, int mines, Difficulty difficulty,
+                   GameState outcome, long durationMillis, int clicks, boolean assisted) {
+            this.timestamp = timestamp;
+            this.rows = rows;
+            this.cols = cols;
+            this.mines = mines;
+            this.difficulty = difficulty;
+            this.outcome = outcome;
+            this.durationMillis = durationMillis;
+            this.clicks = clicks;
+            this.assisted = assisted;
+        }
+
+        public boolean isWin() {
+            return outcome == GameState.WON;
+        }
+    }
+
+    // Mỗi độ khó có 1 priority queue: lưu 10 thời gian nhỏ nhất (ms) của các ván thắng không dùng AI.
     private final Map<Difficulty, PriorityQueue<Long>> bestTimes;
 
+    // số ván chơi / thắng theo độ khó (index = ordinal)
+    private int[] played;
+    private int[] won;
+
+    // file đang gắn (null = chỉ trong bộ nhớ, chưa saveToFile lần nào)
+    private Path snapshotPath;
+    private long generation;
+    private long snapshotRecords;
+    private long logRecords;
+    // record chưa được ghi ra file nào (khi chưa gắn file, hoặc ghi log bị lỗi)
+    private List<GameRecord> pending;
+
     // --------- Constructor mặc định ---------
 
     public StatisticsService() {
         bestTimes = new EnumMap<>(Difficulty.class);
-        Comparator<Long> desc = (a, b) -> Long.compare(b, a); // max-heap
-
         for (Difficulty diff : Difficulty.values()) {
-            bestTimes.put(diff, new PriorityQueue<>(desc));
+            bestTimes.put(diff, newTopQueue());
         }
+        played = new int[Difficulty.values().length];
+        won = new int[Difficulty.values().length];
+        pending = new ArrayList<>();
+    }
+
+    private static PriorityQueue<Long> newTopQueue() {
+        return new PriorityQueue<>((a, b) -> Long.compare(b, a)); // max-heap
     }
 
     // --------- API thêm / lấy dữ liệu ---------
 
     /**
-     * Thêm 1 record cho độ khó diff.
-     * Giữ lại tối đa 10 thời gian nhỏ nhất.
+     * Thêm 1 ván thắng của độ khó diff (không rõ số click, không dùng AI).
      */
     public void addRecord(Difficulty diff, long timeMillis) {
-        PriorityQueue<Long> pq = bestTimes.get(diff);
-        if (pq == null) {
-            Comparator<Long> desc = (a, b) -> Long.compare(b, a);
-            pq = new PriorityQueue<>(desc);
-            bestTimes.put(diff, pq);
+        addRecord(new GameRecord(System.currentTimeMillis(), GameConfig.of(diff), GameState.WON, timeMillis, -1, false));
+    }
+
+    /**
+     * Thêm 1 ván (thắng hoặc thua). Nếu đã gắn file thì record được append + force xuống log ngay.
+     */
+    public void addRecord(GameRecord record) {
+        index(record);
+        if (snapshotPath == null) {
+            pending.add(record);
+            return;
+        }
+        try {
+            appendToLog(record);
+            if (logRecords >= COMPACT_THRESHOLD) compact();
+        } catch (IOException e) {
+            // giữ lại trong bộ nhớ, lần saveToFile sau sẽ ghi
+            pending.add(record);
+            System.err.println("Failed to append statistics: " + e.getMessage());
         }
+    }
 
+    /** Cập nhật các view dẫn xuất (top times, số ván) theo 1 record. */
+    private void index(GameRecord record) {
+        Difficulty diff = record.difficulty;
+        if (diff == null) return;
+        played[diff.ordinal()]++;
+        if (!record.isWin()) return;
+        won[diff.ordinal()]++;
+        // ván có AI giúp không lên bảng best time
+        if (!record.assisted) offerTime(diff, record.durationMillis);
+    }
+
+    /** Giữ lại tối đa 10 thời gian nhỏ nhất. */
+    private void offerTime(Difficulty diff, long timeMillis) {
+        PriorityQueue<Long> pq = bestTimes.computeIfAbsent(diff, d -> newTopQueue());
         if (pq.size() < MAX_RECORDS) {
             pq.offer(timeMillis);
         } else {
@@ -71,37 +189,376 @@ public class StatisticsService implements Serializable {
         return pq != null && !pq.isEmpty();
     }
 
+    public int getGamesPlayed(Difficulty diff) {
+        return played[diff.ordinal()];
+    }
+
+    public int getGamesWon(Difficulty diff) {
+        return won[diff.ordinal()];
+    }
+
+    /** Tổng số record (mọi độ khó, cả board custom). */
+    public long getRecordCount() {
+        return snapshotRecords + logRecords + pending.size();
+    }
+
+    /**
+     * Duyệt toàn bộ lịch sử theo thứ tự ghi (snapshot -> log -> chưa ghi).
+     * Đọc thẳng từ đĩa, không giữ lịch sử trong bộ nhớ; record hỏng CRC bị bỏ qua.
+     */
+    public void forEachRecord(Consumer<GameRecord> action) throws IOException {
+        if (snapshotPath != null) {
+            scanRecords(snapshotPath, snapshotDataStart(snapshotPath), snapshotRecords, action);
+            scanRecords(logPath(snapshotPath), LOG_HEADER_BYTES, logRecords, action);
+        }
+        pending.forEach(action);
+    }
+
     // --------- Lưu / Đọc file ---------
 
     /**
-     * Lưu thống kê ra file, dùng ObjectOutputStream.
+     * Lưu thống kê ra file.
+     * Cùng file đang gắn: ghi nốt record còn treo rồi compact log vào snapshot.
+     * File khác (hoặc chưa gắn file nào): ghi snapshot đầy đủ ra path rồi gắn vào file đó.
      */
     public void saveToFile(String path) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(path))) {
-            oos.writeObject(this);
+        try {
+            Path target = Path.of(path);
+            if (snapshotPath != null && snapshotPath.equals(target)) {
+                compact();
+            } else {
+                writeSnapshot(target, generation + 1);
+                bind(target, generation + 1);
+            }
         } catch (IOException e) {
             System.err.println("Failed to save statistics: " + e.getMessage());
         }
     }
 
     /**
-     * Đọc thống kê từ file. Nếu lỗi hoặc file không tồn tại → trả về instance mới.
+     * Đọc thống kê từ file. Nếu file không tồn tại → instance mới gắn vào path.
+     * File hỏng được đổi tên thành path + ".corrupt" (cả log) để không bị ghi đè mất, rồi bắt đầu lại từ đầu.
      */
     public static StatisticsService loadFromFile(String path) {
-        File f = new File(path);
-        if (!f.exists()) {
-            return new StatisticsService();
-        }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path))) {
-            Object obj = ois.readObject();
-            if (obj instanceof StatisticsService s) {
+        Path snap = Path.of(path);
+        StatisticsService s = new StatisticsService();
+        try {
+            if (!Files.exists(snap)) {
+                s.writeSnapshot(snap, 1);
+                s.bind(snap, 1);
                 return s;
-            } else {
-                return new StatisticsService();
             }
-        } catch (IOException | ClassNotFoundException e) {
+            s.readSnapshotIndex(snap);
+            s.replayLog(snap);
+            return s;
+        } catch (IOException | RuntimeException e) {
             System.err.println("Failed to load statistics: " + e.getMessage());
-            return new StatisticsService();
+            try {
+                Files.move(snap, snap.resolveSibling(snap.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+                Path log = logPath(snap);
+                if (Files.exists(log)) {
+                    Files.move(log, log.resolveSibling(log.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ignored) {
+                // không dọn được thì thôi, vẫn trả về instance mới (chưa gắn file)
+                return new StatisticsService();
+            }
+            return loadFromFile(path);
+        }
+    }
+
+    // --------- Snapshot ---------
+
+    private static Path logPath(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".log");
+    }
+
+    private static Path tempPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Ghi snapshot generation gen chứa: record của snapshot + log hiện tại + pending.
+     * Ghi ra file tạm, force rồi rename atomic đè lên target.
+     */
+    private void writeSnapshot(Path target, long gen) throws IOException {
+        Path tmp = tempPath(target);
+        long total = getRecordCount();
+        byte[] index = encodeIndex();
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + index.length + 4);
+            header.putInt(SNAPSHOT_MAGIC).putShort(VERSION).putLong(gen).putLong(total).putInt(index.length).put(index);
+            header.putInt(crc(header.array(), 0, header.position()));
+            header.flip();
+            writeFully(out, header);
+
+            // record cũ: copy nguyên byte (đã có CRC), không cần parse
+            if (snapshotPath != null) {
+                copyRecords(snapshotPath, snapshotDataStart(snapshotPath), snapshotRecords, out);
+                copyRecords(logPath(snapshotPath), LOG_HEADER_BYTES, logRecords, out);
+            }
+            ByteBuffer rec = ByteBuffer.allocate(RECORD_BYTES);
+            for (GameRecord r : pending) {
+                encode(r, rec);
+                writeFully(out, rec);
+            }
+            out.force(true);
+        }
+        replace(tmp, target);
+        snapshotRecords = total;
+        pending.clear();
+    }
+
+    /** Gắn instance vào file snapshot generation gen và bắt đầu 1 log rỗng cùng generation. */
+    private void bind(Path snapshot, long gen) throws IOException {
+        snapshotPath = snapshot;
+        generation = gen;
+        logRecords = 0;
+        startLog(snapshot, gen);
+    }
+
+    private static void startLog(Path snapshot, long gen) throws IOException {
+        Path log = logPath(snapshot);
+        Path tmp = tempPath(log);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+            header.putInt(LOG_MAGIC).putShort(VERSION).putLong(gen).flip();
+            writeFully(out, header);
+            out.force(true);
+        }
+        replace(tmp, log);
+    }
+
+    /**
+     * Gộp log (+ pending) vào snapshot mới. Crash giữa chừng vẫn an toàn:
+     * snapshot mới có generation lớn hơn nên log cũ (đã nằm trong snapshot) sẽ bị bỏ qua khi load.
+     */
+    private void compact() throws IOException {
+        if (logRecords == 0 && pending.isEmpty()) return;
+        long gen = generation + 1;
+        writeSnapshot(snapshotPath, gen);
+        bind(snapshotPath, gen);
+    }
+
+    private static long snapshotDataStart(Path snapshot) throws IOException {
+        try (FileChannel ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            readFully(ch, buf, 0);
+            return SNAPSHOT_HEADER_BYTES + buf.getInt(SNAPSHOT_HEADER_BYTES - 4) + 4;
+        }
+    }
+
+    /** Đọc header + index của snapshot; index hỏng thì dựng lại bằng cách quét record. */
+    private void readSnapshotIndex(Path snap) throws IOException {
+        try (FileChannel ch = FileChannel.open(snap, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            readFully(ch, head, 0);
+            if (head.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a statistics snapshot");
+            short version = head.getShort();
+            if (version != VERSION) throw new IOException("Unsupported statistics version " + version);
+            long gen = head.getLong();
+            long count = head.getLong();
+            int indexLength = head.getInt();
+            if (indexLength < 0 || indexLength > 1 << 20) throw new IOException("Corrupt statistics header");
+
+            ByteBuffer rest = ByteBuffer.allocate(indexLength + 4);
+            readFully(ch, rest, SNAPSHOT_HEADER_BYTES);
+            byte[] all = new byte[SNAPSHOT_HEADER_BYTES + indexLength];
+            System.arraycopy(head.array(), 0, all, 0, SNAPSHOT_HEADER_BYTES);
+            System.arraycopy(rest.array(), 0, all, SNAPSHOT_HEADER_BYTES, indexLength);
+
+            long dataStart = SNAPSHOT_HEADER_BYTES + indexLength + 4;
+            if (ch.size() < dataStart + count * RECORD_BYTES) throw new IOException("Truncated statistics snapshot");
+
+            snapshotPath = snap;
+            generation = gen;
+            snapshotRecords = count;
+            if (crc(all, 0, all.length) == rest.getInt(indexLength)) {
+                decodeIndex(ByteBuffer.wrap(rest.array(), 0, indexLength));
+            } else {
+                scanRecords(snap, dataStart, count, this::index);
+            }
+        }
+    }
+
+    /**
+     * Replay các record của log cùng generation; cắt bỏ đuôi ghi dở / hỏng CRC.
+     * Log thiếu hoặc cũ hơn snapshot => tạo log rỗng mới.
+     */
+    private void replayLog(Path snap) throws IOException {
+        Path log = logPath(snap);
+        if (!Files.exists(log) || Files.size(log) < LOG_HEADER_BYTES || logGeneration(log) != generation) {
+            startLog(snap, generation);
+            return;
+        }
+
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long max = (ch.size() - LOG_HEADER_BYTES) / RECORD_BYTES;
+            long valid = scanRecords(ch, LOG_HEADER_BYTES, max, this::index);
+            long end = LOG_HEADER_BYTES + valid * RECORD_BYTES;
+            if (ch.size() > end) {
+                ch.truncate(end);
+                ch.force(true);
+            }
+            logRecords = valid;
+        }
+    }
+
+    private static long logGeneration(Path log) throws IOException {
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(LOG_HEADER_BYTES);
+            readFully(ch, buf, 0);
+            if (buf.getInt() != LOG_MAGIC || buf.getShort() != VERSION) return -1;
+            return buf.getLong();
+        }
+    }
+
+    private void appendToLog(GameRecord record) throws IOException {
+        ByteBuffer rec = ByteBuffer.allocate(RECORD_BYTES);
+        encode(record, rec);
+        try (FileChannel ch = FileChannel.open(logPath(snapshotPath), StandardOpenOption.WRITE)) {
+            // ghi ngay sau record hợp lệ cuối (đè lên đuôi hỏng nếu có)
+            long pos = LOG_HEADER_BYTES + logRecords * RECORD_BYTES;
+            while (rec.hasRemaining()) pos += ch.write(rec, pos);
+            ch.force(false);
+        }
+        logRecords++;
+    }
+
+    // --------- Index ---------
+
+    /** Index = với mỗi độ khó: ordinal, số ván chơi, số ván thắng, top times. */
+    private byte[] encodeIndex() {
+        Difficulty[] diffs = Difficulty.values();
+        ByteBuffer buf = ByteBuffer.allocate(1 + diffs.length * (1 + 4 + 4 + 1 + 8 * MAX_RECORDS));
+        buf.put((byte) diffs.length);
+        for (Difficulty d : diffs) {
+            List<Long> top = getTopTimes(d);
+            buf.put((byte) d.ordinal()).putInt(played[d.ordinal()]).putInt(won[d.ordinal()]).put((byte) top.size());
+            for (long t : top) buf.putLong(t);
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    private void decodeIndex(ByteBuffer buf) throws IOException {
+        Difficulty[] diffs = Difficulty.values();
+        int n = buf.get();
+        for (int k = 0; k < n; k++) {
+            int ordinal = buf.get();
+            if (ordinal < 0 || ordinal >= diffs.length) throw new IOException("Unknown difficulty " + ordinal);
+            Difficulty d = diffs[ordinal];
+            played[ordinal] = buf.getInt();
+            won[ordinal] = buf.getInt();
+            int top = buf.get();
+            for (int t = 0; t < top; t++) offerTime(d, buf.getLong());
+        }
+    }
+
+    // --------- Record ---------
+
+    private static void encode(GameRecord r, ByteBuffer buf) {
+        buf.clear();
+        buf.putLong(r.timestamp)
+                .putInt(r.rows)
+                .putInt(r.cols)
+                .putInt(r.mines)
+                .put((byte) (r.difficulty == null ? -1 : r.difficulty.ordinal()))
+                .put((byte) r.outcome.ordinal())
+                .put((byte) (r.assisted ? FLAG_ASSISTED : 0))
+                .putLong(r.durationMillis)
+                .putInt(r.clicks);
+        buf.putInt(crc(buf.array(), 0, RECORD_BYTES - 4));
+        buf.flip();
+    }
+
+    /** null nếu CRC sai hoặc dữ liệu vô lý. */
+    private static GameRecord decode(ByteBuffer buf) {
+        if (crc(buf.array(), 0, RECORD_BYTES - 4) != buf.getInt(RECORD_BYTES - 4)) return null;
+        long timestamp = buf.getLong();
+        int rows = buf.getInt(), cols = buf.getInt(), mines = buf.getInt();
+        int diff = buf.get(), outcome = buf.get(), flags = buf.get();
+        long duration = buf.getLong();
+        int clicks = buf.getInt();
+
+        Difficulty[] diffs = Difficulty.values();
+        GameState[] states = GameState.values();
+        if (diff < -1 || diff >= diffs.length || outcome < 0 || outcome >= states.length) return null;
+        return new GameRecord(timestamp, rows, cols, mines, diff < 0 ? null : diffs[diff],
+                states[outcome], duration, clicks, (flags & FLAG_ASSISTED) != 0);
+    }
+
+    private static long scanRecords(Path file, long start, long count, Consumer<GameRecord> action) throws IOException {
+        if (count == 0) return 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scanRecords(ch, start, count, action);
+        }
+    }
+
+    /** Đọc tối đa count record từ start, dừng ở record hỏng đầu tiên. @return số record hợp lệ */
+    private static long scanRecords(FileChannel ch, long start, long count, Consumer<GameRecord> action) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(RECORD_BYTES * 256);
+        ByteBuffer rec = ByteBuffer.allocate(RECORD_BYTES);
+        long done = 0;
+        long pos = start;
+        while (done < count) {
+            int batch = (int) Math.min(256, count - done);
+            block.clear().limit(batch * RECORD_BYTES);
+            readFully(ch, block, pos);
+            for (int k = 0; k < batch; k++) {
+                rec.clear();
+                rec.put(block.array(), k * RECORD_BYTES, RECORD_BYTES).flip();
+                GameRecord r = decode(rec);
+                if (r == null) return done;
+                action.accept(r);
+                done++;
+            }
+            pos += (long) batch * RECORD_BYTES;
+        }
+        return done;
+    }
+
+    private static void copyRecords(Path file, long start, long count, FileChannel out) throws IOException {
+        if (count == 0) return;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long pos = start, end = start + count * RECORD_BYTES;
+            while (pos < end) {
+                long n = in.transferTo(pos, end - pos, out);
+                if (n <= 0) throw new EOFException("Statistics file shorter than expected");
+                pos += n;
+            }
+        }
+    }
+
+    // --------- Tiện ích IO ---------
+
+    private static int crc(byte[] data, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(data, off, len);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new EOFException("Unexpected end of statistics file");
+            pos += n;
+        }
+        buf.flip();
+    }
+
+    /** Rename atomic (nếu hệ thống file hỗ trợ), đè lên file cũ. */
+    private static void replace(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
@@ -0,0 +1,152 @@
+package ui;
+
+import ai.AISolver;
+import javafx.application.Platform;
+import service.GameSession;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cho AI tự chơi trên 1 worker thread riêng, để FX thread không bị treo khi giải board lớn.
+ *
+ * - Mỗi bước AI là 1 lệnh gửi vào GameSession (chạy trên writer thread của session),
+ *   nên click của người chơi xếp hàng xen giữa các bước AI, không cần lock chung.
+ * - Worker chỉ đổi model; observer của UI gom các ô đã đổi, FX thread vẽ 1 lần mỗi frame.
+ * - Mỗi lần đổi ván / dừng thì tăng generation, vòng lặp cũ thấy khác generation sẽ tự thoát.
+ */
+public class AutoPlayer {
+
+    /** Tốc độ mặc định (bước / giây); 0 = không giới hạn. */
+    public static final int DEFAULT_SPEED = 20;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ai-autoplay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile GameSession session;
+    // solver được tạo trên writer thread của session (nó đăng ký listener vào GameService)
+    private volatile CompletableFuture<AISolver> solver;
+    private volatile int generation;
+    private volatile boolean running;
+    private volatile int stepsPerSecond = DEFAULT_SPEED;
+
+    // gọi trên FX thread khi vòng lặp dừng: số bước đã đi + còn suy được nữa không
+    private final Consumer<String> onStopped;
+
+    public AutoPlayer(Consumer<String> onStopped) {
+        this.onStopped = onStopped;
+    }
+
+    /** Chuyển sang ván mới; vòng lặp đang chạy (nếu có) sẽ dừng. */
+    public void attach(GameSession session) {
+        pause();
+        this.session = session;
+        this.solver = session.submit(AISolver::new);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setStepsPerSecond(int stepsPerSecond) {
+        this.stepsPerSecond = Math.max(0, stepsPerSecond);
+    }
+
+    public int getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    /** Tự chơi (cả đoán) đến khi hết ván hoặc bị pause. */
+    public void play() {
+        start(true);
+    }
+
+    /** Giải các nước chắc chắn đến khi phải đoán (không tự đoán), bỏ qua giới hạn tốc độ. */
+    public void solveUntilGuess() {
+        start(false);
+    }
+
+    public void pause() {
+        generation++;
+        running = false;
+    }
+
+    /** Đi đúng 1 bước trên worker (dừng autoplay nếu đang chạy). */
+    public void step() {
+        pause();
+        int gen = generation;
+        worker.execute(() -> {
+            boolean moved = move(gen, true);
+            if (!moved && gen == generation) report("AI: no move (stuck or finished)");
+        });
+    }
+
+    private void start(boolean guess) {
+        pause();
+        int gen = generation;
+        running = true;
+        worker.execute(() -> loop(gen, guess));
+    }
+
+    /** 1 bước AI, chạy trên writer thread của session; worker chờ bước xong mới đi tiếp. */
+    private boolean move(int gen, boolean guess) {
+        GameSession s = session;
+        AISolver ai = solver.join();
+        try {
+            return s.submit(g -> gen == generation && (guess ? ai.makeOneMove() : ai.makeDeduction())).join();
+        } catch (RejectedExecutionException e) {
+            // session vừa bị đóng (đổi ván / thoát) giữa chừng: bỏ bước này, generation đã đổi nên vòng lặp tự thoát
+            return false;
+        }
+    }
+
+    private void loop(int gen, boolean guess) {
+        int steps = 0;
+        while (gen == generation) {
+            long began = System.nanoTime();
+            if (!move(gen, guess)) break;
+            steps++;
+
+            int speed = guess ? stepsPerSecond : 0;
+            if (speed > 0) {
+                long waitNanos = TimeUnit.SECONDS.toNanos(1) / speed - (System.nanoTime() - began);
+                if (waitNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (gen != generation) return; // bị pause / đổi ván: người gọi tự cập nhật status
+        running = false;
+        report(guess
+                ? "AI: stopped after " + steps + " step(s)"
+                : "AI: " + steps + " step(s), needs a guess now");
+    }
+
+    private void report(String message) {
+        Platform.runLater(() -> onStopped.accept(message));
+    }
+
+    /** Dừng worker khi đóng ứng dụng; chờ bước đang dở xong để người gọi đóng session sau đó. */
+    public void shutdown() {
+        pause();
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package ui;
+
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import model.Board;
+
+/**
+ * Vẽ board lên 1 Canvas thay vì 1 Button cho mỗi ô.
+ *
+ * - Canvas chỉ to bằng vùng đang nhìn thấy, và chỉ các ô trong vùng đó được vẽ
+ *   => số node trong scene graph và thời gian tạo ván mới không phụ thuộc kích thước board.
+ * - 1 mouse handler duy nhất, đổi toạ độ pixel ra (row, col).
+ * - Cuộn bằng thanh cuộn / con lăn (Shift + lăn: cuộn ngang), Ctrl + lăn: zoom quanh con trỏ.
+ * - redrawCell(index) vẽ lại đúng 1 ô (bỏ qua nếu ô nằm ngoài vùng nhìn thấy).
+ */
+public class BoardCanvas extends Region {
+
+    /** Nhận click đã đổi sang ô. */
+    public interface CellClickHandler {
+        void onCellClick(int row, int col, MouseButton button);
+    }
+
+    private static final double DEFAULT_CELL = 30;
+    private static final double MIN_CELL = 4;
+    private static final double MAX_CELL = 64;
+    // ô nhỏ hơn mức này thì không vẽ chữ / số nữa, chỉ tô màu
+    private static final double MIN_TEXT_CELL = 12;
+    private static final double MAX_PREF_SIZE = 900;
+
+    private static final Color CLOSED = Color.web("#bdbdbd");
+    private static final Color CLOSED_LIGHT = Color.web("#e0e0e0");
+    private static final Color OPENED = Color.web("#d9d9d9");
+    private static final Color GRID = Color.web("#9e9e9e");
+    private static final Color FLAG = Color.web("#d32f2f");
+    private static final Color[] NUMBER_COLORS = {
+            Color.TRANSPARENT,
+            Color.web("#1976d2"), Color.web("#388e3c"), Color.web("#d32f2f"), Color.web("#303f9f"),
+            Color.web("#8d2b0b"), Color.web("#00838f"), Color.BLACK, Color.web("#616161")
+    };
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar hBar = new ScrollBar();
+    private final ScrollBar vBar = new ScrollBar();
+
+    private Board board;
+    private double cellSize = DEFAULT_CELL;
+    private CellClickHandler clickHandler;
+    // true: vẽ cả mìn chưa mở (khi thua), không đổi gì trên board
+    private boolean showMines;
+
+    public BoardCanvas() {
+        vBar.setOrientation(Orientation.VERTICAL);
+        getChildren().addAll(canvas, hBar, vBar);
+
+        hBar.valueProperty().addListener((obs, o, n) -> redrawAll());
+        vBar.valueProperty().addListener((obs, o, n) -> redrawAll());
+
+        canvas.setOnMouseClicked(e -> {
+            if (board == null || clickHandler == null) return;
+            int c = (int) Math.floor((e.getX() + hBar.getValue()) / cellSize);
+            int r = (int) Math.floor((e.getY() + vBar.getValue()) / cellSize);
+            if (r < 0 || r >= board.getRows() || c < 0 || c >= board.getCols()) return;
+            clickHandler.onCellClick(r, c, e.getButton());
+        });
+        canvas.setOnScroll(this::onScroll);
+    }
+
+    public void setOnCellClick(CellClickHandler handler) {
+        this.clickHandler = handler;
+    }
+
+    /** Đổi board cần vẽ (ván mới), về lại zoom mặc định và góc trên trái. */
+    public void setBoard(Board board) {
+        this.board = board;
+        cellSize = DEFAULT_CELL;
+        hBar.setValue(0);
+        vBar.setValue(0);
+        requestLayout();
+        redrawAll();
+    }
+
+    public boolean isShowMines() {
+        return showMines;
+    }
+
+    /** Bật/tắt lớp hiện mìn; người gọi tự redrawAll(). */
+    public void setShowMines(boolean showMines) {
+        this.showMines = showMines;
+    }
+
+    // ---------- Kích thước / layout ----------
+
+    @Override
+    protected double computePrefWidth(double height) {
+        double content = board == null ? 0 : Math.min(board.getCols() * cellSize, MAX_PREF_SIZE);
+        return snappedLeftInset() + content + vBar.prefWidth(-1) + snappedRightInset();
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        double content = board == null ? 0 : Math.min(board.getRows() * cellSize, MAX_PREF_SIZE);
+        return snappedTopInset() + content + hBar.prefHeight(-1) + snappedBottomInset();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double left = snappedLeftInset(), top = snappedTopInset();
+        double barW = vBar.prefWidth(-1), barH = hBar.prefHeight(-1);
+        double w = Math.max(0, getWidth() - left - snappedRightInset() - barW);
+        double h = Math.max(0, getHeight() - top - snappedBottomInset() - barH);
+
+        canvas.setWidth(w);
+        canvas.setHeight(h);
+        canvas.relocate(left, top);
+        vBar.resizeRelocate(left + w, top, barW, h);
+        hBar.resizeRelocate(left, top + h, w, barH);
+        updateScrollRanges();
+        redrawAll();
+    }
+
+    private void updateScrollRanges() {
+        double contentW = board == null ? 0 : board.getCols() * cellSize;
+        double contentH = board == null ? 0 : board.getRows() * cellSize;
+        configureBar(hBar, contentW, canvas.getWidth());
+        configureBar(vBar, contentH, canvas.getHeight());
+    }
+
+    private static void configureBar(ScrollBar bar, double content, double viewport) {
+        double max = Math.max(0, content - viewport);
+        bar.setMin(0);
+        bar.setMax(max);
+        bar.setVisibleAmount(max == 0 ? 0 : viewport * max / content);
+        bar.setUnitIncrement(DEFAULT_CELL);
+        bar.setBlockIncrement(Math.max(DEFAULT_CELL, viewport * 0.9));
+        bar.setValue(Math.min(bar.getValue(), max));
+        bar.setDisable(max == 0);
+    }
+
+    // ---------- Cuộn / zoom ----------
+
+    private void onScroll(ScrollEvent e) {
+        if (board == null) return;
+        if (e.isControlDown()) {
+            double factor = e.getDeltaY() > 0 ? 1.25 : 0.8;
+            zoomAt(e.getX(), e.getY(), cellSize * factor);
+        } else if (e.isShiftDown() || e.getDeltaX() != 0) {
+            double d = e.getDeltaX() != 0 ? e.getDeltaX() : e.getDeltaY();
+            hBar.setValue(clamp(hBar.getValue() - d, hBar.getMin(), hBar.getMax()));
+        } else {
+            vBar.setValue(clamp(vBar.getValue() - e.getDeltaY(), vBar.getMin(), vBar.getMax()));
+        }
+        e.consume();
+    }
+
+    /** Đổi kích thước ô, giữ nguyên ô đang nằm dưới điểm (x, y) của canvas. */
+    public void zoomAt(double x, double y, double newCellSize) {
+        newCellSize = clamp(newCellSize, MIN_CELL, MAX_CELL);
+        if (newCellSize == cellSize) return;
+
+        double col = (x + hBar.getValue()) / cellSize;
+        double row = (y + vBar.getValue()) / cellSize;
+        cellSize = newCellSize;
+        updateScrollRanges();
+        hBar.setValue(clamp(col * cellSize - x, hBar.getMin(), hBar.getMax()));
+        vBar.setValue(clamp(row * cellSize - y, vBar.getMin(), vBar.getMax()));
+        redrawAll();
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    // ---------- Vẽ ----------
+
+    /** Vẽ lại toàn bộ vùng đang nhìn thấy. */
+    public void redrawAll() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(GRID);
+        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (board == null) return;
+
+        int c0 = (int) (hBar.getValue() / cellSize);
+        int r0 = (int) (vBar.getValue() / cellSize);
+        int c1 = Math.min(board.getCols() - 1, (int) ((hBar.getValue() + canvas.getWidth()) / cellSize));
+        int r1 = Math.min(board.getRows() - 1, (int) ((vBar.getValue() + canvas.getHeight()) / cellSize));
+
+        prepareText(g);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                drawCell(g, r, c);
+            }
+        }
+    }
+
+    /** Vẽ lại 1 ô (index = r * cols + c) nếu nó đang nhìn thấy. */
+    public void redrawCell(int index) {
+        if (board == null) return;
+        int r = board.row(index), c = board.col(index);
+        double x = c * cellSize - hBar.getValue(), y = r * cellSize - vBar.getValue();
+        if (x + cellSize < 0 || y + cellSize < 0 || x > canvas.getWidth() || y > canvas.getHeight()) return;
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        prepareText(g);
+        drawCell(g, r, c);
+    }
+
+    private void prepareText(GraphicsContext g) {
+        g.setFont(Font.font("System", FontWeight.BOLD, cellSize * 0.55));
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+    }
+
+    private void drawCell(GraphicsContext g, int r, int c) {
+        int i = board.index(r, c);
+        double x = c * cellSize - hBar.getValue(), y = r * cellSize - vBar.getValue();
+        // chừa 1px làm đường lưới (nếu ô đủ lớn)
+        double gap = cellSize >= 8 ? 1 : 0;
+        double s = cellSize - gap;
+        double cx = x + s / 2, cy = y + s / 2;
+        boolean text = cellSize >= MIN_TEXT_CELL;
+
+        g.setFill(GRID);
+        g.fillRect(x, y, cellSize, cellSize);
+
+        if (board.isRevealed(i) || (showMines && board.isMine(i) && !board.isFlagged(i))) {
+            g.setFill(OPENED);
+            g.fillRect(x, y, s, s);
+            if (board.isMine(i)) {
+                g.setFill(Color.BLACK);
+                g.fillOval(cx - s * 0.3, cy - s * 0.3, s * 0.6, s * 0.6);
+            } else {
+                int n = board.getAdjacentMines(i);
+                if (n > 0 && text) {
+                    g.setFill(NUMBER_COLORS[n]);
+                    g.fillText(String.valueOf(n), cx, cy);
+                }
+            }
+        } else {
+            g.setFill(CLOSED_LIGHT);
+            g.fillRect(x, y, s, s);
+            g.setFill(CLOSED);
+            g.fillRect(x + s * 0.1, y + s * 0.1, s * 0.9, s * 0.9);
+            if (board.isFlagged(i)) {
+                g.setFill(FLAG);
+                if (text) {
+                    g.fillPolygon(
+                            new double[]{cx - s * 0.2, cx + s * 0.25, cx - s * 0.2},
+                            new double[]{cy - s * 0.3, cy - s * 0.12, cy + s * 0.05},
+                            3);
+                    g.setFill(Color.BLACK);
+                    g.fillRect(cx - s * 0.22, cy - s * 0.3, Math.max(1, s * 0.06), s * 0.6);
+                } else {
+                    g.fillRect(x, y, s, s);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package ui;
 
-import ai.AISolver;
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -13,28 +14,32 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import model.Board;
-import model.Cell;
+import javafx.util.StringConverter;
 import model.Difficulty;
+import model.GameConfig;
 import model.GameState;
 import service.GameService;
+import service.GameSession;
 import service.StatisticsService;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class MinesweeperApp extends Application {
 
     private static final String STATS_FILE = "best_times.dat";
 
-    private GameService gameService;
-    private AISolver aiSolver;
-    private Button[][] buttons;
+    // mọi thao tác với ván đều là lệnh gửi vào session (chạy trên writer thread của nó),
+    // FX thread chỉ đọc snapshot / board
+    private GameSession session;
+    private Difficulty difficulty;
+    private BoardCanvas boardView;
+    private Button autoPlayBtn;
     private Label statusLabel;
     private ComboBox<Difficulty> difficultyCombo;
 
@@ -46,16 +51,47 @@ public class MinesweeperApp extends Application {
     private long lastElapsedMillis;
     private boolean timerRunning = false;
 
-    // BEST TIMES (persistent)
+    // BEST TIMES + lịch sử ván (persistent)
     private StatisticsService statisticsService;
+    // số liệu của ván hiện tại để ghi vào lịch sử
+    private int clicks;
+    private boolean aiAssisted;
+    private boolean gameRecorded;
+
+    // AI tự chơi trên worker thread, mỗi bước là 1 lệnh gửi vào session
+    private final AutoPlayer autoPlayer = new AutoPlayer(this::onAutoPlayStopped);
+
+    // Các ô đã đổi từ frame trước: observer ghi vào pending (writer thread của session),
+    // mỗi frame FX thread đổi chỗ pending <-> drawing rồi vẽ drawing ngoài lock.
+    private final Object dirtyLock = new Object();
+    private DirtyCells pending = new DirtyCells();
+    private DirtyCells drawing = new DirtyCells();
+    private GameState shownState = GameState.PLAYING;
+    private AnimationTimer frameTimer;
+
+    // Chỉ ghi lại các ô session báo là đã đổi, vẽ gộp 1 lần mỗi frame (không refresh cả board)
+    private final GameSession.Observer boardObserver = new GameSession.Observer() {
+        @Override
+        public void sessionUpdated(GameSession.Snapshot snapshot, int[] cells, int count) {
+            synchronized (dirtyLock) {
+                pending.add(cells, count);
+            }
+        }
+
+        @Override
+        public void boardReplaced(GameSession.Snapshot snapshot) {
+            synchronized (dirtyLock) {
+                pending.markAll();
+            }
+        }
+    };
 
     @Override
     public void start(Stage primaryStage) {
         // load statistics từ file (nếu có)
         statisticsService = StatisticsService.loadFromFile(STATS_FILE);
 
-        gameService = new GameService(Difficulty.MEDIUM);
-        aiSolver = new AISolver(gameService);
+        attachGame(Difficulty.MEDIUM);
 
         BorderPane root = new BorderPane();
 
@@ -64,8 +100,8 @@ public class MinesweeperApp extends Application {
         root.setTop(topBar);
 
         // CENTER: board
-        GridPane boardPane = createBoardPane();
-        root.setCenter(boardPane);
+        boardView = createBoardView();
+        root.setCenter(boardView);
 
         // BOTTOM: status
         statusLabel = new Label("Playing...");
@@ -78,9 +114,64 @@ public class MinesweeperApp extends Application {
         Scene scene = new Scene(root);
         primaryStage.setTitle("Minesweeper DSA + AI + Undo/Redo");
         primaryStage.setScene(scene);
+        primaryStage.setOnHidden(e -> {
+            frameTimer.stop();
+            autoPlayer.shutdown();
+            session.close();
+            // gộp log vào snapshot cho lần mở sau
+            statisticsService.saveToFile(STATS_FILE);
+        });
         primaryStage.show();
 
         refreshBoardView();
+
+        frameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drawFrame();
+            }
+        };
+        frameTimer.start();
+    }
+
+    /**
+     * Mỗi frame: vẽ các ô đã đổi từ frame trước + cập nhật label.
+     * Canvas đọc thẳng board trong lúc writer có thể đang ghi: ô nào vẽ ra giá trị cũ thì diff của lệnh đó
+     * sẽ tới ở frame sau và ô được vẽ lại, nên không cần khoá board khi vẽ.
+     */
+    private void drawFrame() {
+        synchronized (dirtyLock) {
+            DirtyCells t = drawing;
+            drawing = pending;
+            pending = t;
+        }
+        if (drawing.all) {
+            boardView.redrawAll();
+        } else {
+            for (int k = 0; k < drawing.size; k++) {
+                boardView.redrawCell(drawing.cells[k]);
+            }
+        }
+        if (!drawing.isEmpty()) updateMineLabel();
+        drawing.clear();
+
+        GameState state = session.snapshot().state;
+        if (state != shownState) {
+            shownState = state;
+            updateGameStateLabel();
+        }
+    }
+
+    private void onAutoPlayStopped(String message) {
+        autoPlayBtn.setText("Auto Play");
+        // ván đã xong thì giữ thông báo thắng/thua
+        if (session.snapshot().state == GameState.PLAYING) setStatus(message);
+    }
+
+    private void ensureTimerStarted() {
+        if (!timerRunning && session.snapshot().state == GameState.PLAYING) {
+            startTimer();
+        }
     }
 
     // ----------------- TOP BAR -----------------
@@ -101,8 +192,7 @@ public class MinesweeperApp extends Application {
 
         Button newGameBtn = new Button("New Game");
         newGameBtn.setOnAction(e -> {
-            gameService = new GameService(difficultyCombo.getValue());
-            aiSolver = new AISolver(gameService);
+            attachGame(difficultyCombo.getValue());
             rebuildBoard();
             resetTimer();
             updateMineLabel();
@@ -111,37 +201,65 @@ public class MinesweeperApp extends Application {
 
         Button aiMoveBtn = new Button("AI Move");
         aiMoveBtn.setOnAction(e -> {
-            if (!timerRunning && gameService.getState() == GameState.PLAYING) {
-                startTimer();
+            ensureTimerStarted();
+            aiAssisted = true;
+            autoPlayBtn.setText("Auto Play");
+            autoPlayer.step();
+        });
+
+        Button aiSolveBtn = new Button("AI Solve");
+        aiSolveBtn.setOnAction(e -> {
+            ensureTimerStarted();
+            aiAssisted = true;
+            autoPlayBtn.setText("Auto Play");
+            autoPlayer.solveUntilGuess();
+            setStatus("AI: solving...");
+        });
+
+        // Play / Pause: AI tự chơi (cả đoán) trên worker thread với tốc độ chọn ở speedCombo
+        autoPlayBtn = new Button("Auto Play");
+        autoPlayBtn.setOnAction(e -> {
+            if (autoPlayer.isRunning()) {
+                autoPlayer.pause();
+                autoPlayBtn.setText("Auto Play");
+                setStatus("AI: paused");
+            } else if (session.snapshot().state == GameState.PLAYING) {
+                ensureTimerStarted();
+                aiAssisted = true;
+                autoPlayer.play();
+                autoPlayBtn.setText("Pause");
+                setStatus("AI: playing...");
             }
-            boolean moved = aiSolver.makeOneMove();
-            refreshBoardView();
-            if (!moved) setStatus("AI: no move (stuck or finished)");
-            updateGameStateLabel();
         });
 
+        ComboBox<Integer> speedCombo = new ComboBox<>();
+        speedCombo.getItems().addAll(1, 5, AutoPlayer.DEFAULT_SPEED, 100, 0);
+        speedCombo.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Integer speed) {
+                return speed == null ? "" : speed == 0 ? "Max" : speed + " steps/s";
+            }
+
+            @Override
+            public Integer fromString(String text) {
+                return null;
+            }
+        });
+        speedCombo.setValue(AutoPlayer.DEFAULT_SPEED);
+        speedCombo.setOnAction(e -> autoPlayer.setStepsPerSecond(speedCombo.getValue()));
+
         Button undoBtn = new Button("Undo");
         undoBtn.setOnAction(e -> {
-            if (gameService.undo()) {
-                refreshBoardView();
-                updateGameStateLabel();
-                updateMineLabel();
-                setStatus("Undo successful");
-            } else {
-                setStatus("Nothing to undo");
-            }
+            pauseAutoPlay();
+            session.undo().thenAccept(done ->
+                    Platform.runLater(() -> setStatus(done ? "Undo successful" : "Nothing to undo")));
         });
 
         Button redoBtn = new Button("Redo");
         redoBtn.setOnAction(e -> {
-            if (gameService.redo()) {
-                refreshBoardView();
-                updateGameStateLabel();
-                updateMineLabel();
-                setStatus("Redo successful");
-            } else {
-                setStatus("Nothing to redo");
-            }
+            pauseAutoPlay();
+            session.redo().thenAccept(done ->
+                    Platform.runLater(() -> setStatus(done ? "Redo successful" : "Nothing to redo")));
         });
 
         Button helpBtn = new Button("How to Play");
@@ -160,6 +278,9 @@ public class MinesweeperApp extends Application {
                 difficultyCombo,
                 newGameBtn,
                 aiMoveBtn,
+                aiSolveBtn,
+                autoPlayBtn,
+                speedCombo,
                 undoBtn,
                 redoBtn,
                 helpBtn,
@@ -173,113 +294,103 @@ public class MinesweeperApp extends Application {
 
     // ----------------- BOARD UI -----------------
 
-    private GridPane createBoardPane() {
-        Board board = gameService.getBoard();
-        int rows = board.getRows();
-        int cols = board.getCols();
-
-        GridPane grid = new GridPane();
-        grid.setPadding(new Insets(10));
-        grid.setHgap(1);
-        grid.setVgap(1);
-        grid.setAlignment(Pos.CENTER);
-
-        buttons = new Button[rows][cols];
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Button btn = new Button();
-                btn.setPrefSize(30, 30);
-                final int rr = r, cc = c;
-                btn.setOnMouseClicked(e -> {
-                    if (gameService.getState() != GameState.PLAYING) return;
-
-                    if (!timerRunning) {
-                        startTimer();
-                    }
-
-                    if (e.getButton() == MouseButton.PRIMARY) {
-                        gameService.reveal(rr, cc);
-                    } else if (e.getButton() == MouseButton.SECONDARY) {
-                        gameService.toggleFlag(rr, cc);
-                    }
-                    refreshBoardView();
-                    updateGameStateLabel();
-                });
-                buttons[r][c] = btn;
-                grid.add(btn, c, r);
-            }
-        }
+    private BoardCanvas createBoardView() {
+        BoardCanvas view = new BoardCanvas();
+        view.setPadding(new Insets(10));
+        view.setBoard(session.snapshot().board);
+        view.setOnCellClick((r, c, button) -> {
+            GameSession.Snapshot snapshot = session.snapshot();
+            if (snapshot.state != GameState.PLAYING) return;
 
-        return grid;
+            if (!timerRunning) {
+                startTimer();
+            }
+            clicks++;
+
+            if (button == MouseButton.PRIMARY) {
+                // click vào ô số đã mở = chord (đọc hơi cũ cũng không sao: chord ô chưa mở / reveal ô đã mở đều bị bỏ qua)
+                if (session.read(b -> b.isRevealed(b.index(r, c)))) session.chord(r, c);
+                else session.reveal(r, c);
+            } else if (button == MouseButton.SECONDARY) {
+                session.toggleFlag(r, c);
+            } else if (button == MouseButton.MIDDLE) {
+                session.chord(r, c);
+            }
+        });
+        return view;
     }
 
+    /** Ván mới: chỉ đổi board cho canvas (không tạo lại node nào), rồi co cửa sổ theo kích thước mới. */
     private void rebuildBoard() {
-        BorderPane root = (BorderPane) statusLabel.getScene().getRoot();
-        GridPane newPane = createBoardPane();
-        root.setCenter(newPane);
+        autoPlayBtn.setText("Auto Play");
+        boardView.setShowMines(false);
+        boardView.setBoard(session.snapshot().board);
         refreshBoardView();
+        statusLabel.getScene().getWindow().sizeToScene();
     }
 
-    private void refreshBoardView() {
-        Board board = gameService.getBoard();
-        int rows = board.getRows();
-        int cols = board.getCols();
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Cell cell = board.getCell(r, c);
-                Button btn = buttons[r][c];
-
-                if (cell.isRevealed()) {
-                    if (cell.isMine()) {
-                        btn.setText("💣");
-                        btn.setDisable(true);
-                    } else {
-                        int n = cell.getAdjacentMines();
-                        btn.setText(n == 0 ? "" : String.valueOf(n));
-                        btn.setDisable(true);
-                    }
-                } else {
-                    if (cell.isFlagged()) {
-                        btn.setText("🚩");
-                    } else {
-                        btn.setText("");
-                    }
-                    btn.setDisable(false);
-                }
-            }
+    /**
+     * Ván mới: mở session mới, gắn observer + AI, rồi mới đóng session cũ (lệnh đang xếp hàng vẫn chạy nốt).
+     * AI phải chuyển sang session mới trước, nếu không bước AI đang dở sẽ gửi lệnh vào session đã đóng.
+     */
+    private void attachGame(Difficulty diff) {
+        GameSession old = session;
+        if (old != null) old.removeObserver(boardObserver);
+        difficulty = diff;
+        session = new GameSession(new GameService(diff));
+        session.addObserver(boardObserver);
+        autoPlayer.attach(session);
+        if (old != null) old.close();
+        synchronized (dirtyLock) {
+            pending.markAll();
         }
+        shownState = session.snapshot().state;
+        clicks = 0;
+        aiAssisted = false;
+        gameRecorded = false;
+    }
+
+    private void pauseAutoPlay() {
+        if (!autoPlayer.isRunning()) return;
+        autoPlayer.pause();
+        autoPlayBtn.setText("Auto Play");
+    }
+
+    /** Vẽ lại toàn bộ vùng đang nhìn thấy: chỉ dùng khi dựng board mới hoặc khi thua (lộ hết mìn). */
+    private void refreshBoardView() {
+        boardView.redrawAll();
         updateMineLabel();
     }
 
     private void updateGameStateLabel() {
-        if (gameService.getState() == GameState.WON) {
+        GameState state = session.snapshot().state;
+        // thua thì lộ hết mìn (chỉ là lớp vẽ, không đổi board => undo sau khi thua vẫn đúng)
+        boolean showMines = state == GameState.LOST;
+        if (boardView.isShowMines() != showMines) {
+            boardView.setShowMines(showMines);
+            refreshBoardView();
+        }
+
+        if (state == GameState.WON) {
             setStatus("YOU WIN! 🎉");
             stopTimer();
-            // lưu best time cho độ khó hiện tại
-            if (lastElapsedMillis > 0) {
-                statisticsService.addRecord(gameService.getDifficulty(), lastElapsedMillis);
-                statisticsService.saveToFile(STATS_FILE);
-            }
-        } else if (gameService.getState() == GameState.LOST) {
+            recordGame(state);
+        } else if (state == GameState.LOST) {
             setStatus("YOU LOST 💥");
             stopTimer();
-            revealAllMines();
-            refreshBoardView();
+            recordGame(state);
         }
     }
 
-    private void revealAllMines() {
-        Board b = gameService.getBoard();
-        for (int r = 0; r < b.getRows(); r++) {
-            for (int c = 0; c < b.getCols(); c++) {
-                Cell cell = b.getCell(r, c);
-                if (cell.isMine()) {
-                    cell.reveal();
-                }
-            }
-        }
+    /**
+     * Ghi ván vào lịch sử (append vào log ngay, không ghi lại cả file).
+     * Mỗi ván chỉ ghi kết quả đầu tiên: thua rồi undo để thắng tiếp không được tính là 1 ván thắng.
+     */
+    private void recordGame(GameState outcome) {
+        if (gameRecorded || lastElapsedMillis <= 0) return;
+        gameRecorded = true;
+        statisticsService.addRecord(new StatisticsService.GameRecord(System.currentTimeMillis(),
+                GameConfig.of(difficulty), outcome, lastElapsedMillis, clicks, aiAssisted));
     }
 
     private void setStatus(String msg) {
@@ -290,7 +401,7 @@ public class MinesweeperApp extends Application {
 
     private void updateMineLabel() {
         if (mineLabel != null) {
-            mineLabel.setText("Mines left: " + gameService.getRemainingMines());
+            mineLabel.setText("Mines left: " + session.snapshot().remainingMines);
         }
     }
 
@@ -309,6 +420,7 @@ public class MinesweeperApp extends Application {
 
     private void stopTimer() {
         if (!timerRunning) return;
+        lastElapsedMillis = System.currentTimeMillis() - startMillis;
         timerRunning = false;
         timer.stop();
     }
@@ -352,7 +464,9 @@ public class MinesweeperApp extends Application {
         Label controls = new Label(
                 "🖱 Controls\n" +
                 "• Left click: open a cell.\n" +
-                "• Right click: place/remove a flag (🚩) on a suspected mine.\n"
+                "• Right click: place/remove a flag (🚩) on a suspected mine.\n" +
+                "• Middle click (or left click) on an opened number whose flags are all placed:\n" +
+                "  open all its other neighbours at once (chord).\n"
         );
         controls.setWrapText(true);
 
@@ -422,7 +536,8 @@ public class MinesweeperApp extends Application {
 
         for (Difficulty diff : Difficulty.values()) {
             VBox section = new VBox(4);
-            Label diffLabel = new Label("• " + diff.name());
+            Label diffLabel = new Label("• " + diff.name() + "  (won " + statisticsService.getGamesWon(diff)
+                    + " / played " + statisticsService.getGamesPlayed(diff) + ")");
             diffLabel.setStyle("-fx-font-weight: bold;");
 
             List<Long> times = statisticsService.getTopTimes(diff);
@@ -450,6 +565,45 @@ public class MinesweeperApp extends Application {
         popup.show();
     }
 
+    // ----------------- DIRTY CELLS -----------------
+
+    /** Danh sách ô cần vẽ lại trong frame tới; quá nhiều thì vẽ lại cả vùng nhìn thấy. */
+    private static final class DirtyCells {
+        // vượt ngưỡng này thì vẽ lại vùng nhìn thấy còn rẻ hơn vẽ từng ô
+        private static final int MAX_CELLS = 1 << 15;
+
+        private int[] cells = new int[256];
+        private int size;
+        private boolean all;
+
+        void add(int[] changed, int count) {
+            if (all) return;
+            if (size + count > MAX_CELLS) {
+                markAll();
+                return;
+            }
+            if (size + count > cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(cells.length * 2, size + count));
+            }
+            System.arraycopy(changed, 0, cells, size, count);
+            size += count;
+        }
+
+        void markAll() {
+            all = true;
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0 && !all;
+        }
+
+        void clear() {
+            size = 0;
+            all = false;
+        }
+    }
+
     // ----------------- MAIN -----------------
 
     public static void main(String[] args) {